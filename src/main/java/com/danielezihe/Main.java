@@ -3,9 +3,11 @@ package com.danielezihe;
 
 import com.danielezihe.controllers.ToDoController;
 import com.danielezihe.controllers.UserController;
+import com.danielezihe.controllers.UserPage;
 import com.danielezihe.entities.ToDoEntity;
 import com.danielezihe.entities.UserEntity;
 import com.danielezihe.entities.util.CreatedAtQueryTypes;
+import com.danielezihe.entities.util.CreatedAtRangeQueryTypes;
 import com.danielezihe.entities.util.ToDoStatus;
 import com.danielezihe.entities.util.TodoEntityProperties;
 import com.danielezihe.entities.util.UserEntityChangeableProperties;
@@ -34,6 +36,8 @@ public class Main {
     public static final int EIGHT = 8;
     public static final int NINE = 9;
 
+    private static final int USERS_PAGE_SIZE = 50;
+
     private static final UserController userController = UserController.getInstance();
 
     public static void main(String[] args) {
@@ -96,27 +100,22 @@ public class Main {
     }
 
     static void handleGetListOfAllUsers() {
-        StringBuilder stringBuilder = new StringBuilder();
-        Stream<Map.Entry<String, UserEntity>> allUsersStream = userController.getAllUsersStream();
+        UserPage page = userController.getUsersPage(USERS_PAGE_SIZE, null);
 
-        List<Map.Entry<String, UserEntity>> allUsersList = allUsersStream.toList();
-        if (allUsersList.isEmpty()) {
-            println("---------------------USERS----------------------");
+        println("---------------------USERS----------------------");
+        if (page.getUsers().isEmpty())
             println("                   No Users.                    ");
-            println("------------------------------------------------");
-        } else {
-            allUsersList.forEach(
-                    user -> {
-                        UserEntity userEntity = user.getValue();
-                        String userStr = userEntity.getId() + "\t" + userEntity.getName() + "\t" + userEntity.getEmail();
-                        appendLine(stringBuilder, userStr);
-                    }
+
+        while (!page.getUsers().isEmpty()) {
+            page.getUsers().forEach(
+                    userEntity -> println(userEntity.getId() + "\t" + userEntity.getName() + "\t" + userEntity.getEmail())
             );
 
-            println("---------------------USERS----------------------");
-            println(stringBuilder.toString());
-            println("------------------------------------------------");
+            if (!page.hasNext())
+                break;
+            page = userController.getUsersPage(USERS_PAGE_SIZE, page.getNextCursor());
         }
+        println("------------------------------------------------");
     }
 
     static void handleAddNewTodo(UserEntity user) {
@@ -256,6 +255,18 @@ public class Main {
                         OrderedMap<Integer, ToDoEntity> response = mTodoController.findTodo(query, CreatedAtQueryTypes.DATE_TIME);
                         printFindTodoSearchResult(response);
                     }
+                    case "r" -> {
+                        OrderedMap<Integer, ToDoEntity> response = mTodoController.findTodo(query, CreatedAtRangeQueryTypes.BETWEEN);
+                        printFindTodoSearchResult(response);
+                    }
+                    case "ld" -> {
+                        OrderedMap<Integer, ToDoEntity> response = mTodoController.findTodo(query, CreatedAtRangeQueryTypes.LAST_DAYS);
+                        printFindTodoSearchResult(response);
+                    }
+                    case "nw" -> {
+                        OrderedMap<Integer, ToDoEntity> response = mTodoController.findTodo(query, CreatedAtRangeQueryTypes.NEWEST);
+                        printFindTodoSearchResult(response);
+                    }
                     default -> println("Tag not found. Please try again");
                 }
             }
@@ -506,6 +517,9 @@ public class Main {
                 -dS: Short Date (Eg: 10/10/2021)
                 -t: Time in 24hr format (Eg: 10:30)
                 -dt: Date and time (Eg: 10/10/2021 10:30)
+                -r: Created between two dates or date and times (Eg: 10/10/2021..12/10/2021 Eg: 10/10/2021 10:30..10/10/2021 18:00)
+                -ld: Created in the last number of days (Eg: 7)
+                -nw: Newest number of Todos (Eg: 10)
                 Press 0 to go back.""");
     }
 
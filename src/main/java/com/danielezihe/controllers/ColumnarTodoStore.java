@@ -0,0 +1,657 @@
+package com.danielezihe.controllers;
+
+import com.danielezihe.entities.ToDoEntity;
+import com.danielezihe.entities.util.CompactText;
+import com.danielezihe.entities.util.ToDoStatus;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.LongPredicate;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+/**
+ * Struct-of-arrays {@link TodoStore}. Each Todo property lives in its own column indexed by
+ * Todo id: a {@link BitSet} of used slots, a {@code long[]} of CreatedAt milliseconds, a
+ * {@link BitSet} of COMPLETED flags and separate title and description columns of texts
+ * pooled by {@link CompactText}. No {@link ToDoEntity} is kept per Todo; {@link #get(int)} hands out a
+ * small view that reads and writes the columns.
+ * <p>
+ * The columns also answer the status and CreatedAt queries of {@link ToDoController}, so a
+ * controller using this store keeps no status or CreatedAt index: status sets are views over
+ * the bit sets and CreatedAt queries scan the {@code long[]} column in chunks.
+ * <p>
+ * Columns are guarded by a read-write lock held only for the duration of a column access.
+ */
+final class ColumnarTodoStore implements TodoStore {
+    private static final int INITIAL_CAPACITY = 16;
+    private static final int SCAN_CHUNK = 4096;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private long[] createdAts = new long[INITIAL_CAPACITY];
+    private Object[] titles = new Object[INITIAL_CAPACITY];
+    private Object[] descriptions = new Object[INITIAL_CAPACITY];
+    private final BitSet present = new BitSet();
+    private final BitSet completed = new BitSet();
+    private int size;
+
+    @Override
+    public ToDoEntity get(int id) {
+        lock.readLock().lock();
+        try {
+            return isPresent(id) ? new ColumnView(id) : null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public ToDoEntity put(ToDoEntity todo) {
+        int id = todo.getId();
+        if (id <= 0)
+            throw new IllegalArgumentException("Todo id must be positive: " + id);
+
+        lock.writeLock().lock();
+        try {
+            ToDoEntity previous = isPresent(id) ? detach(id) : null;
+            ensureCapacity(id + 1);
+
+            createdAts[id] = todo.getCreatedAt();
+            titles[id] = CompactText.compact(todo.getTitle());
+            descriptions[id] = CompactText.compact(todo.getDescription());
+            completed.set(id, todo.getStatus() == ToDoStatus.COMPLETED);
+            present.set(id);
+            if (previous == null)
+                size++;
+            return previous;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public ToDoEntity remove(int id) {
+        lock.writeLock().lock();
+        try {
+            if (!isPresent(id))
+                return null;
+
+            ToDoEntity previous = detach(id);
+            titles[id] = null;
+            descriptions[id] = null;
+            present.clear(id);
+            completed.clear(id);
+            size--;
+            return previous;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Stream<ToDoEntity> stream(int fromId) {
+        return IntStream.iterate(nextPresentId(Math.max(fromId, 0)), id -> id >= 0, id -> nextPresentId(id + 1))
+                .mapToObj(this::get)
+                .filter(Objects::nonNull);
+    }
+
+    /**
+     * Gets the ids of the Todos in a given status, read straight from the status column
+     * @param status The status to filter by
+     * @return a live, read-only {@link NavigableSet} of the matching ids
+     */
+    NavigableSet<Integer> idsWithStatus(ToDoStatus status) {
+        return new StatusIds(status, 1, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Lazily scans the CreatedAt column for matching Todos. The column is read one chunk at
+     * a time, so short-circuiting operations stop the scan early.
+     * @param createdAt Test applied to the CreatedAt milliseconds of each Todo
+     * @param afterId Only Todos with a greater id are returned
+     * @return the matching ids in ascending order
+     */
+    Stream<Integer> idsCreatedMatching(LongPredicate createdAt, int afterId) {
+        return LongStream.iterate(Math.max(afterId, 0) + 1L, fromId -> fromId < capacity(), fromId -> fromId + SCAN_CHUNK)
+                .mapToObj(fromId -> scan((int) fromId, createdAt))
+                .flatMapToInt(Arrays::stream)
+                .boxed();
+    }
+
+    /**
+     * Scans the CreatedAt column for the Todos created within a time range
+     * @param fromMillis Start of the range in milliseconds (inclusive)
+     * @param toMillis End of the range in milliseconds (inclusive)
+     * @return the matching ids ordered from oldest to newest
+     */
+    Stream<Integer> idsCreatedBetween(long fromMillis, long toMillis) {
+        if (fromMillis > toMillis)
+            return Stream.empty();
+
+        return idsByCreatedAt(createdAt -> createdAt >= fromMillis && createdAt <= toMillis, false);
+    }
+
+    /**
+     * Scans the CreatedAt column for all Todos
+     * @return the ids ordered from newest to oldest
+     */
+    Stream<Integer> idsNewestFirst() {
+        return idsByCreatedAt(createdAt -> true, true);
+    }
+
+    /**
+     * Defers the scan of {@link #sortByCreatedAt(LongPredicate)} until the Stream is consumed
+     */
+    private Stream<Integer> idsByCreatedAt(LongPredicate match, boolean newestFirst) {
+        return Stream.of(match).flatMap(m -> {
+            int[] ids = sortByCreatedAt(m);
+            return IntStream.range(0, ids.length).mapToObj(i -> ids[newestFirst ? ids.length - 1 - i : i]);
+        });
+    }
+
+    /**
+     * Collects the ids whose CreatedAt matches, ordered by CreatedAt and then id. Ids are
+     * handed out in creation order, so the scan is usually sorted already and only checked.
+     */
+    private int[] sortByCreatedAt(LongPredicate match) {
+        int[] ids = new int[INITIAL_CAPACITY];
+        long[] times = new long[INITIAL_CAPACITY];
+        int count = 0;
+        boolean sorted = true;
+
+        for (long fromId = 1; fromId < capacity(); fromId += SCAN_CHUNK) {
+            lock.readLock().lock();
+            try {
+                int toId = (int) Math.min(fromId + SCAN_CHUNK, createdAts.length);
+                for (int id = present.nextSetBit((int) fromId); id >= 0 && id < toId; id = present.nextSetBit(id + 1)) {
+                    long createdAt = createdAts[id];
+                    if (!match.test(createdAt))
+                        continue;
+                    if (count == ids.length) {
+                        ids = Arrays.copyOf(ids, count * 2);
+                        times = Arrays.copyOf(times, count * 2);
+                    }
+                    sorted &= count == 0 || times[count - 1] <= createdAt;
+                    ids[count] = id;
+                    times[count++] = createdAt;
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        if (sorted)
+            return Arrays.copyOf(ids, count);
+
+        int[] scanned = ids;
+        long[] scannedTimes = times;
+        // A stable sort of the id-ordered scan keeps equal timestamps ordered by id
+        return IntStream.range(0, count).boxed()
+                .sorted(Comparator.comparingLong(i -> scannedTimes[i]))
+                .mapToInt(i -> scanned[i])
+                .toArray();
+    }
+
+    /**
+     * Scans one chunk of the CreatedAt column
+     * @param fromId The first id of the chunk
+     * @param match Test applied to the CreatedAt milliseconds of each Todo
+     * @return the matching ids of the chunk in ascending order
+     */
+    private int[] scan(int fromId, LongPredicate match) {
+        lock.readLock().lock();
+        try {
+            int toId = (int) Math.min((long) fromId + SCAN_CHUNK, createdAts.length);
+            int[] matches = new int[Math.max(toId - fromId, 0)];
+            int count = 0;
+            for (int id = present.nextSetBit(fromId); id >= 0 && id < toId; id = present.nextSetBit(id + 1)) {
+                if (match.test(createdAts[id]))
+                    matches[count++] = id;
+            }
+            return Arrays.copyOf(matches, count);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private int capacity() {
+        lock.readLock().lock();
+        try {
+            return createdAts.length;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private int nextPresentId(int fromId) {
+        lock.readLock().lock();
+        try {
+            return present.nextSetBit(fromId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Finds the first id in a status at or after an id. Every COMPLETED Todo is present, so
+     * ACTIVE Todos are the present ones outside the COMPLETED column.
+     * @return the id, or -1 if there is none
+     */
+    private int nextWithStatus(ToDoStatus status, int fromId) {
+        lock.readLock().lock();
+        try {
+            if (status == ToDoStatus.COMPLETED)
+                return completed.nextSetBit(fromId);
+
+            int id = present.nextSetBit(fromId);
+            while (id >= 0 && completed.get(id))
+                id = present.nextSetBit(completed.nextClearBit(id));
+            return id;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Finds the last id in a status at or before an id
+     * @return the id, or -1 if there is none
+     */
+    private int previousWithStatus(ToDoStatus status, int fromId) {
+        lock.readLock().lock();
+        try {
+            if (status == ToDoStatus.COMPLETED)
+                return completed.previousSetBit(fromId);
+
+            int id = present.previousSetBit(fromId);
+            while (id >= 0 && completed.get(id))
+                id = present.previousSetBit(completed.previousClearBit(id));
+            return id;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Counts the Todos in a status with a population count over the columns
+     * @return the number of Todos in @param(status) with an id from @param(fromId) to @param(toId)
+     */
+    private int countWithStatus(ToDoStatus status, int fromId, int toId) {
+        lock.readLock().lock();
+        try {
+            int end = (int) Math.min(toId + 1L, present.length());
+            if (end <= fromId)
+                return 0;
+
+            BitSet presentIds = fromId <= 1 && end == present.length() ? present : present.get(fromId, end);
+            BitSet completedIds = fromId <= 1 && end == present.length() ? completed : completed.get(fromId, end);
+            return status == ToDoStatus.COMPLETED
+                    ? completedIds.cardinality()
+                    : presentIds.cardinality() - completedIds.cardinality();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private boolean hasStatus(int id, ToDoStatus status) {
+        lock.readLock().lock();
+        try {
+            return isPresent(id) && completed.get(id) == (status == ToDoStatus.COMPLETED);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private boolean isPresent(int id) {
+        return id > 0 && present.get(id);
+    }
+
+    /**
+     * Copies a Todo out of the columns, for callers that receive a replaced or removed Todo.
+     * Must be called with the lock held.
+     */
+    private ToDoEntity detach(int id) {
+        ToDoStatus status = completed.get(id) ? ToDoStatus.COMPLETED : ToDoStatus.ACTIVE;
+        return new ToDoEntity(id, CompactText.expand(titles[id]), CompactText.expand(descriptions[id]), status, createdAts[id]);
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= createdAts.length)
+            return;
+
+        int newCapacity = Math.max(capacity, createdAts.length + (createdAts.length >> 1));
+        createdAts = Arrays.copyOf(createdAts, newCapacity);
+        titles = Arrays.copyOf(titles, newCapacity);
+        descriptions = Arrays.copyOf(descriptions, newCapacity);
+    }
+
+    /**
+     * Read-only, weakly consistent set of the ids in one status between two bounds, backed by
+     * the status column, in ascending or descending id order
+     */
+    private final class StatusIds extends AbstractSet<Integer> implements NavigableSet<Integer> {
+        private final ToDoStatus status;
+        private final int fromId;
+        private final int toId;
+        private final boolean descending;
+
+        /**
+         * @param fromId The smallest id in the set (inclusive)
+         * @param toId The largest id in the set (inclusive)
+         */
+        StatusIds(ToDoStatus status, long fromId, long toId) {
+            this(status, fromId, toId, false);
+        }
+
+        private StatusIds(ToDoStatus status, long fromId, long toId, boolean descending) {
+            this.status = status;
+            this.fromId = (int) Math.max(fromId, 1);
+            this.toId = (int) Math.min(toId, Integer.MAX_VALUE);
+            this.descending = descending;
+        }
+
+        /**
+         * @return the smallest id in the set at or above @param(id), or null if there is none
+         */
+        private Integer next(long id) {
+            if (id < fromId)
+                id = fromId;
+            if (id > toId)
+                return null;
+            int next = nextWithStatus(status, (int) id);
+            return next >= 0 && next <= toId ? next : null;
+        }
+
+        /**
+         * @return the largest id in the set at or below @param(id), or null if there is none
+         */
+        private Integer previous(long id) {
+            if (id > toId)
+                id = toId;
+            if (id < fromId)
+                return null;
+            int previous = previousWithStatus(status, (int) id);
+            return previous >= fromId ? previous : null;
+        }
+
+        /**
+         * @return the id following @param(id) in the order of this set, or null if there is none
+         */
+        private Integer after(long id, boolean inclusive) {
+            return descending ? previous(inclusive ? id : id - 1) : next(inclusive ? id : id + 1);
+        }
+
+        /**
+         * @return the id preceding @param(id) in the order of this set, or null if there is none
+         */
+        private Integer before(long id, boolean inclusive) {
+            return descending ? next(inclusive ? id : id + 1) : previous(inclusive ? id : id - 1);
+        }
+
+        private Iterator<Integer> iterator(boolean inDescendingOrder) {
+            return new Iterator<>() {
+                private Integer next = inDescendingOrder ? previous(toId) : StatusIds.this.next(fromId);
+
+                @Override
+                public boolean hasNext() {
+                    return next != null;
+                }
+
+                @Override
+                public Integer next() {
+                    if (next == null)
+                        throw new NoSuchElementException();
+                    Integer current = next;
+                    next = inDescendingOrder ? previous(current - 1L) : StatusIds.this.next(current + 1L);
+                    return current;
+                }
+            };
+        }
+
+        @Override
+        public Iterator<Integer> iterator() {
+            return iterator(descending);
+        }
+
+        @Override
+        public Iterator<Integer> descendingIterator() {
+            return iterator(!descending);
+        }
+
+        @Override
+        public int size() {
+            return countWithStatus(status, fromId, toId);
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return next(fromId) == null;
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return o instanceof Integer id && id >= fromId && id <= toId && hasStatus(id, status);
+        }
+
+        @Override
+        public Integer lower(Integer e) {
+            return before(e, false);
+        }
+
+        @Override
+        public Integer floor(Integer e) {
+            return before(e, true);
+        }
+
+        @Override
+        public Integer ceiling(Integer e) {
+            return after(e, true);
+        }
+
+        @Override
+        public Integer higher(Integer e) {
+            return after(e, false);
+        }
+
+        @Override
+        public Integer first() {
+            Integer first = descending ? previous(toId) : next(fromId);
+            if (first == null)
+                throw new NoSuchElementException();
+            return first;
+        }
+
+        @Override
+        public Integer last() {
+            Integer last = descending ? next(fromId) : previous(toId);
+            if (last == null)
+                throw new NoSuchElementException();
+            return last;
+        }
+
+        /**
+         * @return null if the set is empty
+         * @throws UnsupportedOperationException otherwise, as the set is read-only
+         */
+        @Override
+        public Integer pollFirst() {
+            if (isEmpty())
+                return null;
+            throw new UnsupportedOperationException("Status ids are read-only");
+        }
+
+        /**
+         * @return null if the set is empty
+         * @throws UnsupportedOperationException otherwise, as the set is read-only
+         */
+        @Override
+        public Integer pollLast() {
+            return pollFirst();
+        }
+
+        @Override
+        public NavigableSet<Integer> descendingSet() {
+            return new StatusIds(status, fromId, toId, !descending);
+        }
+
+        @Override
+        public NavigableSet<Integer> subSet(Integer fromElement, boolean fromInclusive, Integer toElement, boolean toInclusive) {
+            long lowest = descending ? (toInclusive ? toElement : toElement + 1L) : (fromInclusive ? fromElement : fromElement + 1L);
+            long highest = descending ? (fromInclusive ? fromElement : fromElement - 1L) : (toInclusive ? toElement : toElement - 1L);
+            return new StatusIds(status, Math.max(fromId, lowest), Math.min(toId, highest), descending);
+        }
+
+        @Override
+        public NavigableSet<Integer> headSet(Integer toElement, boolean inclusive) {
+            return subSet(descending ? toId : fromId, true, toElement, inclusive);
+        }
+
+        @Override
+        public NavigableSet<Integer> tailSet(Integer fromElement, boolean inclusive) {
+            return subSet(fromElement, inclusive, descending ? fromId : toId, true);
+        }
+
+        @Override
+        public SortedSet<Integer> subSet(Integer fromElement, Integer toElement) {
+            return subSet(fromElement, true, toElement, false);
+        }
+
+        @Override
+        public SortedSet<Integer> headSet(Integer toElement) {
+            return headSet(toElement, false);
+        }
+
+        @Override
+        public SortedSet<Integer> tailSet(Integer fromElement) {
+            return tailSet(fromElement, true);
+        }
+
+        @Override
+        public Comparator<? super Integer> comparator() {
+            return descending ? Comparator.reverseOrder() : null;
+        }
+    }
+
+    /**
+     * Lightweight {@link ToDoEntity} reading and writing one row of the columns. Once the Todo
+     * has been removed, reads return null (0 for CreatedAt) and writes are ignored. Two views are equal when they are
+     * rows of the same store with the same id.
+     */
+    private final class ColumnView extends ToDoEntity {
+        ColumnView(int id) {
+            super(id, null, null, null, 0L);
+        }
+
+        private ColumnarTodoStore store() {
+            return ColumnarTodoStore.this;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof ColumnView view && view.store() == store() && view.getId() == getId();
+        }
+
+        @Override
+        public int hashCode() {
+            return Integer.hashCode(getId());
+        }
+
+        @Override
+        public String getTitle() {
+            return CompactText.expand(getCompactTitle());
+        }
+
+        @Override
+        public String getDescription() {
+            return CompactText.expand(getCompactDescription());
+        }
+
+        @Override
+        public Object getCompactTitle() {
+            lock.readLock().lock();
+            try {
+                return isPresent(getId()) ? titles[getId()] : null;
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        @Override
+        public Object getCompactDescription() {
+            lock.readLock().lock();
+            try {
+                return isPresent(getId()) ? descriptions[getId()] : null;
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        @Override
+        public ToDoStatus getStatus() {
+            lock.readLock().lock();
+            try {
+                if (!isPresent(getId()))
+                    return null;
+                return completed.get(getId()) ? ToDoStatus.COMPLETED : ToDoStatus.ACTIVE;
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        @Override
+        public long getCreatedAt() {
+            lock.readLock().lock();
+            try {
+                return isPresent(getId()) ? createdAts[getId()] : 0L;
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        @Override
+        public void setTitle(String title) {
+            Object compactTitle = CompactText.compact(title);
+            lock.writeLock().lock();
+            try {
+                if (isPresent(getId()))
+                    titles[getId()] = compactTitle;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        @Override
+        public void setDescription(String description) {
+            Object compactDescription = CompactText.compact(description);
+            lock.writeLock().lock();
+            try {
+                if (isPresent(getId()))
+                    descriptions[getId()] = compactDescription;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        @Override
+        public void setStatus(ToDoStatus status) {
+            lock.writeLock().lock();
+            try {
+                if (isPresent(getId()))
+                    completed.set(getId(), status == ToDoStatus.COMPLETED);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+}
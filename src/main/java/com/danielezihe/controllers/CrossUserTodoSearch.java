@@ -0,0 +1,114 @@
+package com.danielezihe.controllers;
+
+import com.danielezihe.entities.ToDoEntity;
+import com.danielezihe.entities.UserEntity;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Searches the Todos of many users in parallel on a dedicated {@link ForkJoinPool}.
+ * The range of user ids is split in halves until a slice is small enough to be searched by
+ * one worker, which reads its users straight from the live id index, so the users are never
+ * copied. Workers stream each user's matches lazily and stop as soon as the shared result
+ * limit is reached, so no more matches than the requested limit are ever held.
+ */
+final class CrossUserTodoSearch {
+    private static final int USERS_PER_TASK = 64;
+    private static final ForkJoinPool SEARCH_POOL = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+
+    private CrossUserTodoSearch() {
+    }
+
+    /**
+     * Runs a search over the Todos of the given users
+     * @param usersById The users whose Todos should be searched, keyed by id. User ids are
+     *                  dense, so halving the id range roughly halves the users.
+     * @param matchesOf Lazily streams a user's matching Todos (null if the user has no Todos)
+     * @param limit Maximum number of matches to return
+     * @return the matches paired with their owner, in no particular order
+     */
+    static List<Map.Entry<UserEntity, ToDoEntity>> search(NavigableMap<Integer, UserEntity> usersById,
+                                                          Function<UserEntity, Stream<ToDoEntity>> matchesOf, int limit) {
+        if (limit <= 0)
+            throw new IllegalArgumentException("Result limit must be positive: " + limit);
+        if (usersById.isEmpty())
+            return new ArrayList<>();
+
+        ConcurrentLinkedQueue<Map.Entry<UserEntity, ToDoEntity>> results = new ConcurrentLinkedQueue<>();
+        SEARCH_POOL.invoke(new SearchTask(usersById, usersById.firstKey(), usersById.lastKey() + 1L, matchesOf, limit, new AtomicInteger(), results));
+        return new ArrayList<>(results);
+    }
+
+    private static final class SearchTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final NavigableMap<Integer, UserEntity> usersById;
+        private final long fromId;
+        private final long toId;
+        private final Function<UserEntity, Stream<ToDoEntity>> matchesOf;
+        private final int limit;
+        private final AtomicInteger reserved;
+        private final ConcurrentLinkedQueue<Map.Entry<UserEntity, ToDoEntity>> results;
+
+        /**
+         * @param fromId The smallest user id to be searched (inclusive)
+         * @param toId The largest user id to be searched (exclusive)
+         */
+        SearchTask(NavigableMap<Integer, UserEntity> usersById, long fromId, long toId,
+                   Function<UserEntity, Stream<ToDoEntity>> matchesOf, int limit, AtomicInteger reserved,
+                   ConcurrentLinkedQueue<Map.Entry<UserEntity, ToDoEntity>> results) {
+            this.usersById = usersById;
+            this.fromId = fromId;
+            this.toId = toId;
+            this.matchesOf = matchesOf;
+            this.limit = limit;
+            this.reserved = reserved;
+            this.results = results;
+        }
+
+        @Override
+        protected void compute() {
+            if (isFull())
+                return;
+
+            if (toId - fromId > USERS_PER_TASK) {
+                long middle = (fromId + toId) >>> 1;
+                invokeAll(new SearchTask(usersById, fromId, middle, matchesOf, limit, reserved, results),
+                        new SearchTask(usersById, middle, toId, matchesOf, limit, reserved, results));
+                return;
+            }
+
+            for (UserEntity user : usersById.subMap((int) fromId, true, (int) (toId - 1), true).values()) {
+                if (isFull())
+                    return;
+
+                Stream<ToDoEntity> userMatches = matchesOf.apply(user);
+                if (userMatches == null)
+                    continue;
+
+                try (Stream<ToDoEntity> matches = userMatches) {
+                    matches.takeWhile(todo -> !isFull()).forEach(
+                            todo -> {
+                                if (reserved.getAndIncrement() < limit)
+                                    results.add(new AbstractMap.SimpleImmutableEntry<>(user, todo));
+                            }
+                    );
+                }
+            }
+        }
+
+        private boolean isFull() {
+            return reserved.get() >= limit;
+        }
+    }
+}
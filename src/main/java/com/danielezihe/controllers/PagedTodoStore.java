@@ -0,0 +1,125 @@
+package com.danielezihe.controllers;
+
+import com.danielezihe.entities.ToDoEntity;
+
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Default {@link TodoStore} holding one {@link ToDoEntity} object per Todo. Todo ids are
+ * allocated densely by {@link ToDoController}, so the store is an array indexed by id: no
+ * boxed keys, no tree nodes and O(1) get, put and remove. Deleted ids leave an empty slot behind.
+ * <p>
+ * The array is split into pages so that it can grow without copying or locking the slots
+ * that are already in use. The first page holds {@link #FIRST_PAGE_SIZE} ids and every
+ * later page twice as many as the one before, so a user with a handful of Todos pays for a
+ * handful of slots while large stores still need few pages. Reads and writes of a slot are
+ * lock-free; only adding a new page takes the store's monitor.
+ */
+final class PagedTodoStore implements TodoStore {
+    private static final int FIRST_PAGE_SHIFT = 4;
+    private static final int FIRST_PAGE_SIZE = 1 << FIRST_PAGE_SHIFT;
+
+    private volatile AtomicReferenceArray<AtomicReferenceArray<ToDoEntity>> pages = new AtomicReferenceArray<>(1);
+    private final AtomicInteger size = new AtomicInteger();
+
+    @Override
+    public ToDoEntity get(int id) {
+        AtomicReferenceArray<ToDoEntity> page = id < 0 ? null : page(pageIndex(id));
+        return page == null ? null : page.get(slot(id));
+    }
+
+    @Override
+    public ToDoEntity put(ToDoEntity todo) {
+        int id = todo.getId();
+        if (id < 0)
+            throw new IllegalArgumentException("Todo id must not be negative: " + id);
+
+        ToDoEntity previous = pageForWrite(pageIndex(id)).getAndSet(slot(id), todo);
+        if (previous == null)
+            size.incrementAndGet();
+        return previous;
+    }
+
+    @Override
+    public ToDoEntity remove(int id) {
+        AtomicReferenceArray<ToDoEntity> page = id < 0 ? null : page(pageIndex(id));
+        ToDoEntity previous = page == null ? null : page.getAndSet(slot(id), null);
+        if (previous != null)
+            size.decrementAndGet();
+        return previous;
+    }
+
+    @Override
+    public int size() {
+        return size.get();
+    }
+
+    @Override
+    public Stream<ToDoEntity> stream(int fromId) {
+        AtomicReferenceArray<AtomicReferenceArray<ToDoEntity>> snapshot = pages;
+        return IntStream.rangeClosed(Math.max(fromId, 0), (int) Math.min(firstIdOf(snapshot.length()) - 1, Integer.MAX_VALUE))
+                .mapToObj(id -> {
+                    AtomicReferenceArray<ToDoEntity> page = snapshot.get(pageIndex(id));
+                    return page == null ? null : page.get(slot(id));
+                })
+                .filter(Objects::nonNull);
+    }
+
+    /**
+     * @return the page holding @param(id): page k holds the ids from firstIdOf(k) on
+     */
+    private static int pageIndex(int id) {
+        return 31 - Integer.numberOfLeadingZeros((id >>> FIRST_PAGE_SHIFT) + 1);
+    }
+
+    private static int slot(int id) {
+        return (int) (id - firstIdOf(pageIndex(id)));
+    }
+
+    /**
+     * @return the first id held by page @param(pageIndex)
+     */
+    private static long firstIdOf(int pageIndex) {
+        return ((long) FIRST_PAGE_SIZE << pageIndex) - FIRST_PAGE_SIZE;
+    }
+
+    /**
+     * @return the number of ids held by page @param(pageIndex); the last page stops at Integer.MAX_VALUE
+     */
+    private static int pageSize(int pageIndex) {
+        return (int) (Math.min(firstIdOf(pageIndex + 1), Integer.MAX_VALUE + 1L) - firstIdOf(pageIndex));
+    }
+
+    private AtomicReferenceArray<ToDoEntity> page(int pageIndex) {
+        AtomicReferenceArray<AtomicReferenceArray<ToDoEntity>> current = pages;
+        return pageIndex < current.length() ? current.get(pageIndex) : null;
+    }
+
+    private AtomicReferenceArray<ToDoEntity> pageForWrite(int pageIndex) {
+        AtomicReferenceArray<ToDoEntity> page = page(pageIndex);
+        if (page != null)
+            return page;
+
+        synchronized (this) {
+            AtomicReferenceArray<AtomicReferenceArray<ToDoEntity>> current = pages;
+            if (pageIndex >= current.length()) {
+                // Pages already double in size, so the page table only ever holds a few dozen entries
+                AtomicReferenceArray<AtomicReferenceArray<ToDoEntity>> grown = new AtomicReferenceArray<>(pageIndex + 1);
+                for (int i = 0; i < current.length(); i++)
+                    grown.set(i, current.get(i));
+                pages = current = grown;
+            }
+
+            page = current.get(pageIndex);
+            if (page == null) {
+                page = new AtomicReferenceArray<>(pageSize(pageIndex));
+                current.set(pageIndex, page);
+            }
+            return page;
+        }
+    }
+}
@@ -0,0 +1,369 @@
+package com.danielezihe.controllers;
+
+import com.danielezihe.entities.ToDoEntity;
+import com.danielezihe.entities.UserEntity;
+import com.danielezihe.entities.util.ToDoStatus;
+import com.danielezihe.entities.util.TodoStoreTypes;
+
+import java.io.*;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Point-in-time copy of every user and their Todos, so that startup only replays the
+ * write-ahead log records appended after it.
+ * <p>
+ * File layout: a header (magic number, format version, sequence number of the last log
+ * record covered and last user id handed out), one block per user, an index holding the
+ * position and length of every block and a trailer (user count and index position). A user
+ * block holds the user id, Name, Email and Password hash, followed by the user's Todos as
+ * encoded by {@link TodoSpillFiles#writeTodos(DataOutputStream, ToDoController)}. Texts are
+ * stored as a byte length (-1 for null) and UTF-8 bytes.
+ * <p>
+ * A snapshot is read through a memory mapping of the file. The user blocks are decoded in
+ * parallel; the Todos of a user stay in the mapping until they are first needed.
+ */
+final class SnapshotFile {
+    private static final int MAGIC = 0x54444f53;
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_BYTES = 3 * Integer.BYTES + Long.BYTES;
+    private static final int INDEX_ENTRY_BYTES = Long.BYTES + Integer.BYTES;
+    private static final int TRAILER_BYTES = Integer.BYTES + Long.BYTES;
+    private static final long MAX_MAPPING_BYTES = 1L << 30;
+    private static final String PREFIX = "snapshot-";
+    private static final String SUFFIX = ".snap";
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+
+    /**
+     * Receives the users of a snapshot being loaded, from several threads at once
+     */
+    interface UserHandler {
+        void userLoaded(int userId, String name, String email, String password);
+    }
+
+    /**
+     * Supplies the encoded Todos of each user written to a snapshot
+     */
+    interface TodoSource {
+        void writeTodos(int userId, DataOutputStream output) throws IOException;
+    }
+
+    /**
+     * Where a user's encoded Todos lie in a mapping of the file
+     */
+    private record TodoRegion(ByteBuffer mapping, int offset, int length) {
+    }
+
+    private final Path file;
+    private final long sequence;
+    private final int lastUserId;
+    private final Map<Integer, TodoRegion> todoRegions;
+
+    private SnapshotFile(Path file, long sequence, int lastUserId, Map<Integer, TodoRegion> todoRegions) {
+        this.file = file;
+        this.sequence = sequence;
+        this.lastUserId = lastUserId;
+        this.todoRegions = todoRegions;
+    }
+
+    /**
+     * @return the newest snapshot in a directory, or null if there is none
+     * @throws IOException if the directory cannot be listed
+     */
+    static Path newest(Path directory) throws IOException {
+        return snapshots(directory).stream().filter(snapshot -> snapshot.getFileName().toString().endsWith(SUFFIX))
+                .max(Comparator.comparingLong(SnapshotFile::sequenceOf)).orElse(null);
+    }
+
+    /**
+     * @return the file of the snapshot covering the log up to @param(sequence)
+     */
+    static Path fileFor(Path directory, long sequence) {
+        return directory.resolve(PREFIX + String.format("%020d", sequence) + SUFFIX);
+    }
+
+    /**
+     * Deletes the snapshots, finished or not, older than a snapshot
+     * @param directory The directory holding the snapshots
+     * @param sequence The sequence number of the snapshot to keep
+     * @throws IOException if a snapshot cannot be deleted
+     */
+    static void deleteOlder(Path directory, long sequence) throws IOException {
+        for (Path snapshot : snapshots(directory)) {
+            if (sequenceOf(snapshot) < sequence)
+                Files.deleteIfExists(snapshot);
+        }
+    }
+
+    /**
+     * Writes a snapshot to a temporary file, syncs it and moves it into place
+     * @param file The snapshot file
+     * @param sequence The sequence number of the last log record covered
+     * @param lastUserId The last user id handed out
+     * @param users The users to be written
+     * @param todos Supplies the encoded Todos of each user
+     * @throws IOException if the snapshot cannot be written
+     */
+    static void write(Path file, long sequence, int lastUserId, Collection<UserEntity> users, TodoSource todos) throws IOException {
+        Path temporaryFile = file.resolveSibling(file.getFileName() + TEMPORARY_SUFFIX);
+        ByteArrayOutputStream indexBytes = new ByteArrayOutputStream();
+        DataOutputStream index = new DataOutputStream(indexBytes);
+
+        try (FileChannel channel = FileChannel.open(temporaryFile, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+             DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16))) {
+            output.writeInt(MAGIC);
+            output.writeInt(FORMAT_VERSION);
+            output.writeLong(sequence);
+            output.writeInt(lastUserId);
+
+            long position = HEADER_BYTES;
+            int count = 0;
+            ByteArrayOutputStream blockBytes = new ByteArrayOutputStream(256);
+            DataOutputStream block = new DataOutputStream(blockBytes);
+            for (UserEntity user : users) {
+                blockBytes.reset();
+                block.writeInt(user.getId());
+                TodoSpillFiles.writeText(block, user.getName());
+                TodoSpillFiles.writeText(block, user.getEmail());
+                TodoSpillFiles.writeText(block, user.getPassword());
+                todos.writeTodos(user.getId(), block);
+
+                blockBytes.writeTo(output);
+                index.writeLong(position);
+                index.writeInt(blockBytes.size());
+                position += blockBytes.size();
+                count++;
+            }
+
+            indexBytes.writeTo(output);
+            output.writeInt(count);
+            output.writeLong(position);
+            output.flush();
+            channel.force(true);
+        }
+        Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Maps a snapshot into memory and decodes its users in parallel
+     * @param file The snapshot file
+     * @param handler Receives every user of the snapshot (null to skip the users)
+     * @return the loaded {@link SnapshotFile}, from which Todos are read on demand
+     * @throws IOException if the snapshot cannot be read or is corrupt
+     */
+    static SnapshotFile load(Path file, UserHandler handler) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_BYTES + TRAILER_BYTES)
+                throw new IOException("Truncated snapshot " + file);
+
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES);
+            if (header.getInt() != MAGIC)
+                throw new IOException("Not a snapshot: " + file);
+            int version = header.getInt();
+            if (version != FORMAT_VERSION)
+                throw new IOException("Unsupported snapshot version " + version + " in " + file);
+            long sequence = header.getLong();
+            int lastUserId = header.getInt();
+
+            ByteBuffer trailer = channel.map(FileChannel.MapMode.READ_ONLY, size - TRAILER_BYTES, TRAILER_BYTES);
+            int count = trailer.getInt();
+            long indexPosition = trailer.getLong();
+            if (count < 0 || indexPosition < HEADER_BYTES || indexPosition + (long) count * INDEX_ENTRY_BYTES != size - TRAILER_BYTES)
+                throw new IOException("Corrupt snapshot index in " + file);
+
+            ByteBuffer index = channel.map(FileChannel.MapMode.READ_ONLY, indexPosition, (long) count * INDEX_ENTRY_BYTES);
+            long[] positions = new long[count];
+            int[] lengths = new int[count];
+            long expectedPosition = HEADER_BYTES;
+            for (int i = 0; i < count; i++) {
+                positions[i] = index.getLong();
+                lengths[i] = index.getInt();
+                if (positions[i] != expectedPosition || lengths[i] < 0)
+                    throw new IOException("Corrupt snapshot index in " + file);
+                expectedPosition += lengths[i];
+            }
+            if (expectedPosition != indexPosition)
+                throw new IOException("Corrupt snapshot index in " + file);
+
+            ByteBuffer[] mappings = new ByteBuffer[count];
+            int[] offsets = new int[count];
+            mapBlocks(channel, positions, lengths, mappings, offsets);
+            Map<Integer, TodoRegion> todoRegions = new ConcurrentHashMap<>(Math.max(count * 4 / 3, 16));
+            try {
+                IntStream.range(0, count).parallel().forEach(i -> {
+                    ByteBuffer mapping = mappings[i];
+                    int offset = offsets[i];
+                    ByteBuffer block = mapping.slice(offset, lengths[i]);
+
+                    int userId = block.getInt();
+                    String name = readText(block);
+                    String email = readText(block);
+                    String password = readText(block);
+                    if (handler != null)
+                        handler.userLoaded(userId, name, email, password);
+                    todoRegions.put(userId, new TodoRegion(mapping, offset + block.position(), block.remaining()));
+                });
+            } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+                throw new IOException("Corrupt user block in snapshot " + file, e);
+            }
+
+            return new SnapshotFile(file, sequence, lastUserId, todoRegions);
+        }
+    }
+
+    /**
+     * @return the sequence number of the last log record covered by this snapshot
+     */
+    long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * @return the last user id handed out when this snapshot was taken
+     */
+    int getLastUserId() {
+        return lastUserId;
+    }
+
+    Path getFile() {
+        return file;
+    }
+
+    /**
+     * Decodes a user's Todos from the mapped snapshot
+     * @param userId The id of the user owning the Todos
+     * @param storeType The store layout of the returned controller
+     * @return a {@link ToDoController} holding the Todos, or null if the user is not in the snapshot
+     */
+    ToDoController readTodos(int userId, TodoStoreTypes storeType) {
+        ByteBuffer input = todosOf(userId);
+        if (input == null)
+            return null;
+
+        int lastTodoId = input.getInt();
+        return new ToDoController(storeType, decodeTodos(input), lastTodoId);
+    }
+
+    /**
+     * Decodes a user's Todos from the mapped snapshot as plain entities, building no
+     * controller or index
+     * @param userId The id of the user owning the Todos
+     * @return the Todos ordered by id, or null if the user is not in the snapshot
+     */
+    List<ToDoEntity> decodeTodos(int userId) {
+        ByteBuffer input = todosOf(userId);
+        if (input == null)
+            return null;
+
+        input.getInt();
+        return decodeTodos(input);
+    }
+
+    /**
+     * @return a buffer over a user's encoded Todos, or null if the user is not in the snapshot
+     */
+    private ByteBuffer todosOf(int userId) {
+        TodoRegion region = todoRegions.get(userId);
+        return region == null ? null : region.mapping().slice(region.offset(), region.length());
+    }
+
+    /**
+     * Decodes the Todos following the last Todo id in a user's encoded Todos
+     */
+    private static List<ToDoEntity> decodeTodos(ByteBuffer input) {
+        int count = input.getInt();
+        ToDoStatus[] statuses = ToDoStatus.values();
+        List<ToDoEntity> todos = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int id = input.getInt();
+            long createdAt = input.getLong();
+            ToDoStatus status = statuses[input.get()];
+            todos.add(new ToDoEntity(id, readText(input), readText(input), status, createdAt));
+        }
+        return todos;
+    }
+
+    /**
+     * Copies a user's encoded Todos from the mapped snapshot without decoding them
+     * @param userId The id of the user owning the Todos
+     * @param output The stream the Todos are copied to
+     * @return true if the user is in the snapshot, false if nothing was copied
+     */
+    boolean copyTodos(int userId, DataOutputStream output) throws IOException {
+        TodoRegion region = todoRegions.get(userId);
+        if (region == null)
+            return false;
+
+        byte[] bytes = new byte[region.length()];
+        region.mapping().get(region.offset(), bytes);
+        output.write(bytes);
+        return true;
+    }
+
+    /**
+     * Maps consecutive user blocks together, starting a new mapping whenever one would grow
+     * past MAX_MAPPING_BYTES. Fills in the mapping holding each block and the block's offset in it.
+     */
+    private static void mapBlocks(FileChannel channel, long[] positions, int[] lengths,
+                                  ByteBuffer[] mappings, int[] offsets) throws IOException {
+        int first = 0;
+        for (int i = 1; i <= positions.length; i++) {
+            if (i < positions.length && positions[i] + lengths[i] - positions[first] <= MAX_MAPPING_BYTES)
+                continue;
+
+            long end = positions[i - 1] + lengths[i - 1];
+            ByteBuffer mapping = channel.map(FileChannel.MapMode.READ_ONLY, positions[first], end - positions[first]);
+            for (int j = first; j < i; j++) {
+                mappings[j] = mapping;
+                offsets[j] = (int) (positions[j] - positions[first]);
+            }
+            first = i;
+        }
+    }
+
+    private static String readText(ByteBuffer input) {
+        int length = input.getInt();
+        if (length < 0)
+            return null;
+        byte[] bytes = new byte[length];
+        input.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return every snapshot file in a directory, including unfinished ones
+     */
+    private static List<Path> snapshots(Path directory) throws IOException {
+        if (!Files.isDirectory(directory))
+            return List.of();
+
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> {
+                String name = file.getFileName().toString();
+                return name.startsWith(PREFIX) && (name.endsWith(SUFFIX) || name.endsWith(SUFFIX + TEMPORARY_SUFFIX));
+            }).toList();
+        }
+    }
+
+    private static long sequenceOf(Path snapshot) {
+        String name = snapshot.getFileName().toString();
+        return Long.parseLong(name.substring(PREFIX.length(), PREFIX.length() + 20));
+    }
+}
@@ -1,88 +1,280 @@
 package com.danielezihe.controllers;
 
 import com.danielezihe.entities.ToDoEntity;
+import com.danielezihe.entities.util.CompactText;
 import com.danielezihe.entities.util.CreatedAtQueryTypes;
+import com.danielezihe.entities.util.CreatedAtRangeQueryTypes;
 import com.danielezihe.entities.util.ToDoStatus;
 import com.danielezihe.entities.util.TodoEntityProperties;
+import com.danielezihe.entities.util.TodoStoreTypes;
 import org.apache.commons.collections4.BidiMap;
 import org.apache.commons.collections4.OrderedMap;
 import org.apache.commons.collections4.map.LinkedMap;
 import org.apache.commons.io.IOCase;
 
+import java.time.LocalDate;
 import java.time.LocalDateTime;
-import java.time.ZoneId;
-import java.time.format.DateTimeFormatter;
 import java.time.format.TextStyle;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+import java.util.function.LongPredicate;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 /**
  * @author EZIHE S. DANIEL
  * CreatedAt: 09/10/2021
+ * <p>
+ * Safe for use from several threads. Ids come from an atomic counter and every structure is
+ * concurrent; writes to the same Todo are serialized by a lock striped on the Todo id, so
+ * writes to different Todos rarely wait on each other. The lock stripes are one pool shared
+ * by every controller, each controller starting at its own offset in it, so a controller
+ * costs no lock objects of its own.
  */
 public final class ToDoController {
-    private final BidiMap<Integer, ToDoEntity> todos;
-    List<ToDoEntity> todosList;
+    private static final int LOCK_STRIPES = 1024;
+    private static final long CHANGE_WAIT_NANOS = 100_000;
+    private static final int MAX_REMEMBERED_TEXT_MATCHES = 4096;
+    private static final Object[] TODO_LOCKS = new Object[LOCK_STRIPES];
+    private static final AtomicInteger NEXT_LOCK_OFFSET = new AtomicInteger();
 
+    static {
+        for (int i = 0; i < LOCK_STRIPES; i++)
+            TODO_LOCKS[i] = new Object();
+    }
+
+    private final TodoStore todos;
+    private final ColumnarTodoStore columns;
+    private final AtomicInteger lastTodoId = new AtomicInteger();
+    private final AtomicIntegerArray changesInProgress = new AtomicIntegerArray(2);
+    private volatile int changePhase;
+    private final int lockOffset = NEXT_LOCK_OFFSET.getAndAdd(0x9E3779B9);
+    private final Map<ToDoStatus, NavigableSet<Integer>> todoIdsByStatus = new EnumMap<>(ToDoStatus.class);
+    private final TodoTextIndex titleIndex = new TodoTextIndex();
+    private final TodoTextIndex descriptionIndex = new TodoTextIndex();
+    private final TodoCreatedAtIndex createdAtIndex;
+    private final TodoStatistics statistics = new TodoStatistics();
+    private final TodoQueryEngine queryEngine;
+    private volatile TodoChangeLog changeLog;
+
+    public ToDoController() {
+        this(TodoStoreTypes.OBJECTS);
+    }
+
+    /**
+     * Creates a controller with a chosen store layout
+     * @param storeType OBJECTS to keep one {@link ToDoEntity} per Todo, COLUMNAR to keep the
+     *                  Todo properties in compact columns and hand out entity views on demand.
+     *                  The columns then answer status and CreatedAt queries themselves, so no
+     *                  status or CreatedAt index is kept.
+     */
+    public ToDoController(TodoStoreTypes storeType) {
+        columns = storeType == TodoStoreTypes.COLUMNAR ? new ColumnarTodoStore() : null;
+        todos = columns != null ? columns : new PagedTodoStore();
+        createdAtIndex = columns != null ? null : new TodoCreatedAtIndex();
+        queryEngine = new TodoQueryEngine(titleIndex, descriptionIndex, todos::get, todos::stream, todos::size);
+        for (ToDoStatus status : ToDoStatus.values())
+            todoIdsByStatus.put(status, columns != null ? columns.idsWithStatus(status) : new ConcurrentSkipListSet<>());
+    }
+
+    /**
+     * Creates a controller seeded with existing Todos. The Todos are copied into the
+     * controller's own store, so later changes are not written back to @param(todos).
+     * @param todos Todos to be loaded, keyed by id
+     */
     public ToDoController(BidiMap<Integer, ToDoEntity> todos) {
-        this.todos = todos;
+        this();
+        todos.values().forEach(
+                todo -> {
+                    saveTodo(todo);
+                    lastTodoId.accumulateAndGet(todo.getId(), Math::max);
+                }
+        );
+    }
+
+    /**
+     * Creates a controller holding Todos read back from a {@link TodoSpillFiles} file or a
+     * {@link SnapshotFile}
+     * @param storeType The store layout, as for {@link #ToDoController(TodoStoreTypes)}
+     * @param todos The Todos to be loaded
+     * @param lastTodoId The last id handed out before the Todos were written, so ids of
+     *                   deleted Todos are not handed out again
+     */
+    ToDoController(TodoStoreTypes storeType, List<ToDoEntity> todos, int lastTodoId) {
+        this(storeType);
+        indexTodos(todos);
+        todos.forEach(this.todos::put);
+        this.lastTodoId.set(lastTodoId);
+        todos.forEach(todo -> this.lastTodoId.accumulateAndGet(todo.getId(), Math::max));
+    }
+
+    /**
+     * @return the last Todo id handed out
+     */
+    int getLastTodoId() {
+        return lastTodoId.get();
+    }
+
+    /**
+     * @return the number of Todos in the store itself, which every secondary index should agree with
+     */
+    int getStoredTodoCount() {
+        return todos.size();
+    }
+
+    /**
+     * Sets where changes to the Todos are recorded. Every public change waits until its
+     * record is as durable as the log is configured for.
+     * @param changeLog The log receiving the changes (null to stop recording)
+     */
+    void setChangeLog(TodoChangeLog changeLog) {
+        this.changeLog = changeLog;
+    }
+
+    /**
+     * Waits until every public change that may already have been logged is applied, so the
+     * store holds every change logged before the call. Changes are counted per lock region in
+     * one of two phases; the phase is flipped first, so only changes counted before the call
+     * are waited for and later ones cannot hold the caller up.
+     * @param timeoutNanos How long to wait for
+     * @return true once those changes are applied, false if they were still running after @param(timeoutNanos)
+     */
+    synchronized boolean awaitChangesApplied(long timeoutNanos) {
+        long deadline = System.nanoTime() + timeoutNanos;
+        int phase = changePhase;
+        changePhase = phase ^ 1;
+        while (changesInProgress.get(phase) != 0) {
+            if (System.nanoTime() - deadline >= 0)
+                return false;
+            LockSupport.parkNanos(CHANGE_WAIT_NANOS);
+        }
+        return true;
+    }
+
+    /**
+     * Puts a Todo read back from a log, replacing any Todo with the same id. Not recorded.
+     * @param todo The Todo to be restored
+     */
+    void restoreTodo(ToDoEntity todo) {
+        synchronized (lockFor(todo.getId())) {
+            ToDoEntity existing = todos.get(todo.getId());
+            if (existing != null)
+                unindexTodo(existing);
+            saveTodo(todo);
+        }
+        lastTodoId.accumulateAndGet(todo.getId(), Math::max);
+    }
+
+    /**
+     * Removes a Todo whose deletion was read back from a log. Not recorded.
+     * @param todoId The id of the deleted Todo
+     */
+    void restoreDeletedTodo(int todoId) {
+        synchronized (lockFor(todoId)) {
+            removeTodo(todoId);
+        }
     }
 
     /**
-     * Creates and adds a new Todo to the todos BidiMap.
+     * Creates and adds a new Todo to the todos store.
      * @param title Title of the todo
      * @param description Description of the Todo
-     * @return the just created {@link ToDoEntity} todo
+     * @return the just created {@link ToDoEntity} todo, as held by the todos store
      */
     public ToDoEntity createNewTodo(String title, String description) {
-        int id = todos.size() + 1;
+        int id = lastTodoId.incrementAndGet();
         // long createdAt = Timestamp.from(Instant.now()).getTime();
         Calendar calendar = Calendar.getInstance(Locale.UK);
         long createdAt = calendar.getTimeInMillis();
 
         ToDoEntity newTodo = new ToDoEntity(id, title, description, ToDoStatus.ACTIVE, createdAt);
 
-        todos.put(id, newTodo);
+        ToDoEntity created;
+        CompletableFuture<Void> logged;
+        int phase = changeStarted();
+        try {
+            synchronized (lockFor(id)) {
+                saveTodo(newTodo);
+                created = todos.get(id);
+                logged = logSaved(List.of(newTodo));
+            }
+        } finally {
+            changeFinished(phase);
+        }
 
-        return newTodo;
+        changesApplied();
+        WriteAheadLog.awaitDurable(logged);
+        return created;
     }
 
     /**
-     * Gets all active Todos from the todos BidiMap
-     * @return an {@link OrderedMap} containing all active Todos
+     * Creates and adds many new Todos at once. Ids are reserved in one step and the Todos
+     * are grouped by lock stripe, so each lock and each index is visited once per stripe
+     * rather than once per Todo. Like every other change, a stripe is stored and indexed
+     * before it is logged.
+     * @param titlesAndDescriptions Title and Description of each Todo, in the order they should be created
+     * @return the just created {@link ToDoEntity} todos as held by the todos store, in the same order
      */
-    public OrderedMap<Integer, ToDoEntity> getAllActiveTodos() {
-        OrderedMap<Integer, ToDoEntity> activeTodos = new LinkedMap<>();
-        todosList = new ArrayList<>(todos.values());
+    public List<ToDoEntity> createNewTodos(List<Map.Entry<String, String>> titlesAndDescriptions) {
+        int count = titlesAndDescriptions.size();
+        int firstId = lastTodoId.getAndAdd(count) + 1;
+        long createdAt = Calendar.getInstance(Locale.UK).getTimeInMillis();
 
-        todosList.stream().filter(o -> o.getStatus() == ToDoStatus.ACTIVE).forEach(
-                o -> {
-                    activeTodos.put(o.getId(), o);
+        List<ToDoEntity> newTodos = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Map.Entry<String, String> titleAndDescription = titlesAndDescriptions.get(i);
+            newTodos.add(new ToDoEntity(firstId + i, titleAndDescription.getKey(), titleAndDescription.getValue(), ToDoStatus.ACTIVE, createdAt));
+        }
+
+        CompletableFuture<Void> logged = null;
+        List<Integer> newIds = newTodos.stream().map(ToDoEntity::getId).toList();
+        for (Map.Entry<Integer, List<Integer>> stripe : groupByLockStripe(newIds).entrySet()) {
+            int phase = changeStarted();
+            try {
+                synchronized (TODO_LOCKS[stripe.getKey()]) {
+                    List<ToDoEntity> createdInStripe = stripe.getValue().stream().map(id -> newTodos.get(id - firstId)).toList();
+                    indexTodos(createdInStripe);
+                    createdInStripe.forEach(todos::put);
+                    stripe.getValue().forEach(id -> newTodos.set(id - firstId, todos.get(id)));
+                    logged = both(logged, logSaved(createdInStripe));
                 }
-        );
+            } finally {
+                changeFinished(phase);
+            }
+        }
 
-        return activeTodos;
+        if (count > 0)
+            changesApplied();
+        WriteAheadLog.awaitDurable(logged);
+        return newTodos;
     }
 
     /**
-     * Gets all completed Todos from the todos BidiMap
-     * @return an {@link OrderedMap} containing all completed Todos
+     * Gets all active Todos from the todos store
+     * @return a read-only {@link OrderedMap} view containing all active Todos
      */
-    public OrderedMap<Integer, ToDoEntity> getAllCompletedTodos() {
-        OrderedMap<Integer, ToDoEntity> completedTodos = new LinkedMap<>();
-        todosList = new ArrayList<>(todos.values());
-
-        todosList.stream().filter(todo -> todo.getStatus() == ToDoStatus.COMPLETED).forEach(
-                todo -> {
-                    completedTodos.put(todo.getId(), todo);
-                }
-        );
+    public OrderedMap<Integer, ToDoEntity> getAllActiveTodos() {
+        return getAllTodosWithStatus(ToDoStatus.ACTIVE);
+    }
 
-        return completedTodos;
+    /**
+     * Gets all completed Todos from the todos store
+     * @return a read-only {@link OrderedMap} view containing all completed Todos
+     */
+    public OrderedMap<Integer, ToDoEntity> getAllCompletedTodos() {
+        return getAllTodosWithStatus(ToDoStatus.COMPLETED);
     }
 
     /**
-     * Finds a todo from the todos BidiMap. Searches only the Todo Id, Title & Description properties
+     * Finds a todo from the todos store. Searches only the Todo Id, Title & Description properties
      * @param query Query text to be searched
      * @param property Todo Property to be searched
      * @param useStrict boolean flag to decide how the search should be performed
@@ -92,26 +284,14 @@ public final class ToDoController {
     public OrderedMap<Integer, ToDoEntity> findTodo(String query, TodoEntityProperties property, boolean useStrict) {
         OrderedMap<Integer, ToDoEntity> queryTodos = new LinkedMap<>();
         Stream<ToDoEntity> todosStream;
-        todosList = new ArrayList<>(todos.values());
 
         switch (property) {
             case ID -> {
-                ToDoEntity todo = this.todos.get(Integer.parseInt(query));
+                ToDoEntity todo = todos.get(Integer.parseInt(query));
                 queryTodos.put(todo.getId(), todo);
                 return queryTodos;
             }
-            case TITLE -> {
-                if(useStrict)
-                    todosStream = todosList.stream().filter(todo -> IOCase.INSENSITIVE.checkEquals(todo.getTitle(), query));
-                else
-                    todosStream = todosList.stream().filter(todo -> todo.getTitle().toLowerCase().contains(query.toLowerCase()));
-            }
-            case DESCRIPTION -> {
-                if(useStrict)
-                    todosStream = todosList.stream().filter(todo -> IOCase.INSENSITIVE.checkEquals(todo.getDescription(), query));
-                else
-                    todosStream = todosList.stream().filter(todo -> todo.getDescription().toLowerCase().contains(query.toLowerCase()));
-            }
+            case TITLE, DESCRIPTION -> todosStream = searchTodos(query, property, useStrict, 0);
             default -> throw new IllegalStateException("Unexpected value: " + property);
         }
 
@@ -125,91 +305,456 @@ public final class ToDoController {
     }
 
     /**
-     * Finds a todo from the todos BidiMap. Searches only the Todo CreatedAt property
+     * Finds a todo from the todos store. Searches only the Todo CreatedAt property
      * @param query Query text to be searched
      * @param queryType Date format/type the @param(query) is in.
      * @return an {@link OrderedMap} containing the query result
      */
     public OrderedMap<Integer, ToDoEntity> findTodo(String query, CreatedAtQueryTypes queryType) {
         OrderedMap<Integer, ToDoEntity> queryTodos = new LinkedMap<>();
-        Stream<ToDoEntity> todosStream;
-        todosList = new ArrayList<>(todos.values());
 
-        switch (queryType) {
-            case FULL_DATE -> {
-                todosStream = todosList.stream().filter(o -> IOCase.INSENSITIVE.checkEquals(query, getDateString(o.getCreatedAt(), CreatedAtQueryTypes.FULL_DATE)));
-            }
-            case SHORT_DATE -> {
-                todosStream = todosList.stream().filter(o -> IOCase.INSENSITIVE.checkEquals(query, getDateString(o.getCreatedAt(), CreatedAtQueryTypes.SHORT_DATE)));
-            }
-            case TIME -> {
-                todosStream = todosList.stream().filter(o -> IOCase.INSENSITIVE.checkEquals(query, getDateString(o.getCreatedAt(), CreatedAtQueryTypes.TIME)));
-            }
-            case DATE_TIME -> {
-                todosStream = todosList.stream().filter(o -> IOCase.INSENSITIVE.checkEquals(query, getCreatedAtDateTimeShort(o.getCreatedAt())));
-            }
-            default -> {
-                return queryTodos;
+        searchTodos(query, queryType, 0).forEach(
+                todo -> {
+                    queryTodos.put(todo.getId(), todo);
+                }
+        );
+
+        return queryTodos;
+    }
+
+    /**
+     * Counts the Todos in a given status. The count is kept up to date on every change,
+     * so this runs in constant time.
+     * @param status The status to count
+     * @return the number of Todos in @param(status)
+     */
+    public int countTodos(ToDoStatus status) {
+        return statistics.count(status);
+    }
+
+    /**
+     * Counts the Todos created on a given day, in constant time
+     * @param day The day to count
+     * @return the number of existing Todos created on @param(day)
+     */
+    public int countTodosCreatedOn(LocalDate day) {
+        return statistics.countCreatedOn(day);
+    }
+
+    /**
+     * Gets the number of Todos created per day without reading the Todos themselves
+     * @return the days with at least one existing Todo and the number of Todos created on each, oldest first
+     */
+    public NavigableMap<LocalDate, Integer> getTodosCreatedPerDay() {
+        return statistics.createdPerDay();
+    }
+
+    /**
+     * Gets a page of active Todos ordered by id
+     * @param limit Maximum number of Todos in the page
+     * @param cursor Cursor returned with the previous page (null for the first page)
+     * @return a {@link TodoPage} of at most @param(limit) Todos
+     */
+    public TodoPage getActiveTodosPage(int limit, String cursor) {
+        return getTodosPageWithStatus(ToDoStatus.ACTIVE, limit, cursor);
+    }
+
+    /**
+     * Gets a page of completed Todos ordered by id
+     * @param limit Maximum number of Todos in the page
+     * @param cursor Cursor returned with the previous page (null for the first page)
+     * @return a {@link TodoPage} of at most @param(limit) Todos
+     */
+    public TodoPage getCompletedTodosPage(int limit, String cursor) {
+        return getTodosPageWithStatus(ToDoStatus.COMPLETED, limit, cursor);
+    }
+
+    /**
+     * Gets a page of all Todos, in the same order as {@link #getAllTodos()}
+     * @param limit Maximum number of Todos in the page
+     * @param cursor Cursor returned with the previous page (null for the first page)
+     * @return a {@link TodoPage} of at most @param(limit) Todos
+     * @throws IllegalArgumentException if @param(limit) is not positive or @param(cursor) is malformed
+     */
+    public TodoPage getAllTodosPage(int limit, String cursor) {
+        checkLimit(limit);
+        int[] position = TodoPage.decodeCursor(cursor);
+        ToDoStatus[] statuses = ToDoStatus.values();
+        if (position[0] < 0 || position[0] >= statuses.length)
+            throw new IllegalArgumentException("Invalid cursor: " + cursor);
+
+        List<ToDoEntity> page = new ArrayList<>(Math.min(limit, 64));
+        for (int section = position[0]; section < statuses.length; section++) {
+            int afterId = section == position[0] ? position[1] : 0;
+            for (Integer id : todoIdsByStatus.get(statuses[section]).tailSet(afterId, false)) {
+                ToDoEntity todo = todos.get(id);
+                if (todo == null)
+                    continue;
+                if (page.size() == limit)
+                    return new TodoPage(page, TodoPage.encodeCursor(position[0], page.get(limit - 1).getId()));
+                page.add(todo);
+                position[0] = section;
             }
         }
 
-        todosStream.forEach(
-                o -> {
-                    queryTodos.put(o.getId(), o);
+        return new TodoPage(page, null);
+    }
+
+    /**
+     * Gets a page of the results of {@link #findTodo(String, TodoEntityProperties, boolean)}
+     * @param query Query text to be searched
+     * @param property Todo Property to be searched
+     * @param useStrict boolean flag to decide how the search should be performed
+     * @param limit Maximum number of Todos in the page
+     * @param cursor Cursor returned with the previous page (null for the first page)
+     * @return a {@link TodoPage} of at most @param(limit) Todos ordered by id
+     */
+    public TodoPage findTodoPage(String query, TodoEntityProperties property, boolean useStrict, int limit, String cursor) {
+        checkLimit(limit);
+        return toPage(searchTodos(query, property, useStrict, TodoPage.decodeCursor(cursor)[1]), limit);
+    }
+
+    /**
+     * Gets a page of the results of {@link #findTodo(String, CreatedAtQueryTypes)}
+     * @param query Query text to be searched
+     * @param queryType Date format/type the @param(query) is in.
+     * @param limit Maximum number of Todos in the page
+     * @param cursor Cursor returned with the previous page (null for the first page)
+     * @return a {@link TodoPage} of at most @param(limit) Todos ordered by id
+     */
+    public TodoPage findTodoPage(String query, CreatedAtQueryTypes queryType, int limit, String cursor) {
+        checkLimit(limit);
+        return toPage(searchTodos(query, queryType, TodoPage.decodeCursor(cursor)[1]), limit);
+    }
+
+    /**
+     * Finds Todos by a range of their CreatedAt property
+     * @param query Query text. 'from..to' date or date-time bounds for BETWEEN (Eg: 10/10/2021..12/10/2021),
+     *              a number of days for LAST_DAYS and a number of Todos for NEWEST
+     * @param rangeType The kind of range the @param(query) describes
+     * @return an {@link OrderedMap} containing the query result. Empty if the query cannot be parsed
+     */
+    public OrderedMap<Integer, ToDoEntity> findTodo(String query, CreatedAtRangeQueryTypes rangeType) {
+        try {
+            switch (rangeType) {
+                case BETWEEN -> {
+                    long[] range = TodoCreatedAtIndex.parseRange(query);
+                    return range == null ? new LinkedMap<>() : findTodosCreatedBetween(range[0], range[1]);
                 }
-        );
+                case LAST_DAYS -> {
+                    return findTodosCreatedInLastDays(Integer.parseInt(query.trim()));
+                }
+                case NEWEST -> {
+                    return findNewestTodos(Integer.parseInt(query.trim()));
+                }
+                default -> throw new IllegalStateException("Unexpected value: " + rangeType);
+            }
+        } catch (NumberFormatException e) {
+            return new LinkedMap<>();
+        }
+    }
 
-        return queryTodos;
+    /**
+     * Finds Todos created within a time range
+     * @param fromMillis Start of the range in milliseconds (inclusive)
+     * @param toMillis End of the range in milliseconds (inclusive)
+     * @return an {@link OrderedMap} containing the matching Todos ordered from oldest to newest
+     */
+    public OrderedMap<Integer, ToDoEntity> findTodosCreatedBetween(long fromMillis, long toMillis) {
+        return toOrderedMap(findTodosCreatedBetweenStream(fromMillis, toMillis));
+    }
+
+    /**
+     * Finds Todos created within the last given number of days, counted back from now
+     * @param days Number of days to look back
+     * @return an {@link OrderedMap} containing the matching Todos ordered from oldest to newest
+     */
+    public OrderedMap<Integer, ToDoEntity> findTodosCreatedInLastDays(int days) {
+        long now = System.currentTimeMillis();
+        return findTodosCreatedBetween(now - TimeUnit.DAYS.toMillis(days), now);
+    }
+
+    /**
+     * Finds the most recently created Todos
+     * @param count Maximum number of Todos to return
+     * @return an {@link OrderedMap} containing the matching Todos ordered from newest to oldest
+     */
+    public OrderedMap<Integer, ToDoEntity> findNewestTodos(int count) {
+        return toOrderedMap(getNewestTodosStream().limit(Math.max(count, 0)));
+    }
+
+    /**
+     * Lazily streams the results of {@link #findTodo(String, TodoEntityProperties, boolean)} straight
+     * from the live store and indexes. Nothing is copied up front, so short-circuiting operations
+     * such as anyMatch, findFirst or limit stop the search early.
+     * @param query Query text to be searched
+     * @param property Todo Property to be searched
+     * @param useStrict boolean flag to decide how the search should be performed
+     * @return a lazy Stream of the matching Todos ordered by id
+     */
+    public Stream<ToDoEntity> findTodoStream(String query, TodoEntityProperties property, boolean useStrict) {
+        return searchTodos(query, property, useStrict, 0);
+    }
+
+    /**
+     * Runs a ranked boolean search over the Title and Description of the Todos.
+     * Words may be combined with AND, OR, NOT and parentheses; words next to each other are
+     * joined with AND. Eg: "gym AND morning NOT cancelled".
+     * @param query Query to be run
+     * @param limit Maximum number of Todos to return
+     * @return the best matching Todos, most relevant first
+     * @throws IllegalArgumentException if @param(query) is malformed or @param(limit) is not positive
+     */
+    public List<ToDoEntity> rankedSearch(String query, int limit) {
+        return queryEngine.search(query, limit);
+    }
+
+    /**
+     * Lazily streams the results of {@link #findTodo(String, CreatedAtQueryTypes)}
+     * @param query Query text to be searched
+     * @param queryType Date format/type the @param(query) is in.
+     * @return a lazy Stream of the matching Todos ordered by id
+     */
+    public Stream<ToDoEntity> findTodoStream(String query, CreatedAtQueryTypes queryType) {
+        return searchTodos(query, queryType, 0);
+    }
+
+    /**
+     * Lazily streams the Todos created within a time range
+     * @param fromMillis Start of the range in milliseconds (inclusive)
+     * @param toMillis End of the range in milliseconds (inclusive)
+     * @return a lazy Stream of the matching Todos ordered from oldest to newest
+     */
+    public Stream<ToDoEntity> findTodosCreatedBetweenStream(long fromMillis, long toMillis) {
+        return resolve(columns != null
+                ? columns.idsCreatedBetween(fromMillis, toMillis)
+                : createdAtIndex.streamBetween(fromMillis, toMillis));
     }
 
     /**
-     * Updates a Todo Id, Title & Description Properties
+     * Lazily streams all Todos from the most recently created one
+     * @return a lazy Stream of the Todos ordered from newest to oldest
+     */
+    public Stream<ToDoEntity> getNewestTodosStream() {
+        return resolve(columns != null ? columns.idsNewestFirst() : createdAtIndex.streamNewest());
+    }
+
+    /**
+     * Lazily streams the Todos in a given status
+     * @param status The status to filter by
+     * @return a lazy Stream of the matching Todos ordered by id
+     */
+    public Stream<ToDoEntity> getTodosStream(ToDoStatus status) {
+        return resolve(todoIdsByStatus.get(status).stream());
+    }
+
+    /**
+     * Updates a Todo Id, Title & Description Properties. The Todo is changed in place and only
+     * the index of the changed property is adjusted, so it never disappears from view.
      * @param todoId The id of the Todo to be updated
      * @param data The Data to be saved
      * @param property The property of the Todo that would be updated
      */
     public void updateTodo(int todoId, String data, TodoEntityProperties property) {
-        ToDoEntity todo = deleteTodo(todoId);
-
-        if(todo == null)
-            throw new UnsupportedOperationException("Todo with id '" + todoId + "' not found");
+        CompletableFuture<Void> logged;
+        int phase = changeStarted();
+        try {
+            synchronized (lockFor(todoId)) {
+                ToDoEntity todo = getExistingTodo(todoId);
 
-        switch (property) {
-            case TITLE -> todo.setTitle(data);
-            case DESCRIPTION -> todo.setDescription(data);
+                switch (property) {
+                    case TITLE -> {
+                        titleIndex.replace(todoId, todo.getTitle(), data);
+                        todo.setTitle(data);
+                    }
+                    case DESCRIPTION -> {
+                        descriptionIndex.replace(todoId, todo.getDescription(), data);
+                        todo.setDescription(data);
+                    }
+                }
+                logged = logSaved(List.of(todo));
+            }
+        } finally {
+            changeFinished(phase);
         }
 
-        todos.put(todoId, todo);
+        changesApplied();
+        WriteAheadLog.awaitDurable(logged);
     }
 
     /**
-     * Updates a Todo Status.
+     * Updates a Todo Status. The Todo is changed in place and added to its new status index
+     * before it leaves the old one, so it never disappears from view.
      * @param todoId The id of the Todo to be updated
      * @param status The new Status to be saved
      */
     public void updateTodo(int todoId, ToDoStatus status) {
-        ToDoEntity todo = deleteTodo(todoId);
+        CompletableFuture<Void> logged;
+        int phase = changeStarted();
+        try {
+            synchronized (lockFor(todoId)) {
+                ToDoEntity todo = getExistingTodo(todoId);
+                ToDoStatus oldStatus = todo.getStatus();
+
+                if(oldStatus == status)
+                    return;
+
+                todo.setStatus(status);
+                if (columns == null) {
+                    todoIdsByStatus.get(status).add(todoId);
+                    todoIdsByStatus.get(oldStatus).remove(todoId);
+                }
+                statistics.statusChanged(oldStatus, status, 1);
+                logged = logSaved(List.of(todo));
+            }
+        } finally {
+            changeFinished(phase);
+        }
+
+        changesApplied();
+        WriteAheadLog.awaitDurable(logged);
+    }
+
+    /**
+     * Marks every active Todo matching a predicate as COMPLETED
+     * @param filter The predicate active Todos are tested against
+     * @return the number of Todos that were completed
+     */
+    public int completeTodos(Predicate<ToDoEntity> filter) {
+        return completeTodos(getTodosStream(ToDoStatus.ACTIVE).filter(filter).map(ToDoEntity::getId).toList());
+    }
+
+    /**
+     * Marks many Todos as COMPLETED at once. Ids are grouped by lock stripe so each lock and
+     * each status index is visited once per stripe rather than once per Todo. Unknown and
+     * already completed ids are skipped.
+     * @param todoIds The ids of the Todos to be completed
+     * @return the number of Todos that were completed
+     */
+    public int completeTodos(Collection<Integer> todoIds) {
+        NavigableSet<Integer> activeIds = todoIdsByStatus.get(ToDoStatus.ACTIVE);
+        NavigableSet<Integer> completedIds = todoIdsByStatus.get(ToDoStatus.COMPLETED);
+        int completed = 0;
+        CompletableFuture<Void> logged = null;
 
-        todo.setStatus(status);
+        for (Map.Entry<Integer, List<Integer>> stripe : groupByLockStripe(todoIds).entrySet()) {
+            int phase = changeStarted();
+            try {
+                synchronized (TODO_LOCKS[stripe.getKey()]) {
+                    List<Integer> changedIds = new ArrayList<>(stripe.getValue().size());
+                    List<ToDoEntity> changedTodos = new ArrayList<>(stripe.getValue().size());
+                    for (Integer id : stripe.getValue()) {
+                        ToDoEntity todo = todos.get(id);
+                        if (todo != null && todo.getStatus() == ToDoStatus.ACTIVE) {
+                            todo.setStatus(ToDoStatus.COMPLETED);
+                            changedIds.add(id);
+                            changedTodos.add(todo);
+                        }
+                    }
 
-        todos.put(todoId, todo);
+                    if (columns == null) {
+                        completedIds.addAll(changedIds);
+                        activeIds.removeAll(changedIds);
+                    }
+                    statistics.statusChanged(ToDoStatus.ACTIVE, ToDoStatus.COMPLETED, changedIds.size());
+                    completed += changedIds.size();
+                    logged = both(logged, logSaved(changedTodos));
+                }
+            } finally {
+                changeFinished(phase);
+            }
+        }
+
+        if (completed > 0)
+            changesApplied();
+        WriteAheadLog.awaitDurable(logged);
+        return completed;
     }
 
     /**
-     * Removes a {@link ToDoEntity} user from the todos BidiMap.
+     * Removes many Todos at once. Ids are grouped by lock stripe and the indexes are
+     * updated once per batch instead of once per Todo. Unknown ids are skipped.
+     * @param todoIds The ids of the Todos to be removed
+     * @return the recently deleted {@link ToDoEntity} todos
+     */
+    public List<ToDoEntity> deleteTodos(Collection<Integer> todoIds) {
+        List<ToDoEntity> deleted = new ArrayList<>(todoIds.size());
+        CompletableFuture<Void> logged = null;
+
+        for (Map.Entry<Integer, List<Integer>> stripe : groupByLockStripe(todoIds).entrySet()) {
+            int phase = changeStarted();
+            try {
+                synchronized (TODO_LOCKS[stripe.getKey()]) {
+                    List<ToDoEntity> deletedInStripe = new ArrayList<>(stripe.getValue().size());
+                    for (Integer id : stripe.getValue()) {
+                        ToDoEntity todo = todos.remove(id);
+                        if (todo != null)
+                            deletedInStripe.add(todo);
+                    }
+
+                    unindexTodos(deletedInStripe);
+                    deleted.addAll(deletedInStripe);
+                    logged = both(logged, logDeleted(deletedInStripe.stream().map(ToDoEntity::getId).toList()));
+                }
+            } finally {
+                changeFinished(phase);
+            }
+        }
+
+        if (!deleted.isEmpty())
+            changesApplied();
+        WriteAheadLog.awaitDurable(logged);
+        return deleted;
+    }
+
+    /**
+     * Removes a {@link ToDoEntity} user from the todos store.
      * @param todoId id of the Todo to be removed
      * @return the recently deleted {@link ToDoEntity} todo
      */
     public ToDoEntity deleteTodo(int todoId) {
-        return todos.remove(todoId);
+        ToDoEntity todo;
+        CompletableFuture<Void> logged = null;
+        int phase = changeStarted();
+        try {
+            synchronized (lockFor(todoId)) {
+                todo = removeTodo(todoId);
+
+                if(todo != null)
+                    logged = logDeleted(List.of(todoId));
+            }
+        } finally {
+            changeFinished(phase);
+        }
+
+        if (todo != null)
+            changesApplied();
+        WriteAheadLog.awaitDurable(logged);
+        return todo;
     }
 
     /**
-     * Gets all Todos from the todos BidiMap
-     * @return a Stream of todos BidiMap entry set.
+     * Removes a Todo from the store and the indexes. Must be called with the Todo's lock held.
+     * @param todoId id of the Todo to be removed
+     * @return the removed {@link ToDoEntity} todo (null if Todo does not exist)
+     */
+    private ToDoEntity removeTodo(int todoId) {
+        ToDoEntity todo = todos.remove(todoId);
+
+        if(todo != null)
+            unindexTodo(todo);
+
+        return todo;
+    }
+
+    /**
+     * Gets all Todos from the todos store, ordered by status (ACTIVE first) and then by id.
+     * The status indexes are already kept in that order, so nothing is sorted per call.
+     * @return a Stream of the todos store entries.
      */
     public Stream<Map.Entry<Integer, ToDoEntity>> getAllTodos() {
-        return todos.entrySet().stream().sorted(Map.Entry.comparingByValue());
+        return Arrays.stream(ToDoStatus.values())
+                .flatMap(status -> getAllTodosWithStatus(status).entrySet().stream());
     }
 
     /**
@@ -222,27 +767,371 @@ public final class ToDoController {
     }
 
     /**
-     * Converts Todo CreatedAt milliseconds to a formatted Long Date and Time
-     * @param milliseconds The datetime in milliseconds to be converted
-     * @return A String containing the formatted Date and Time
+     * Gets a read-only view of the Todos currently in a given status. The view is backed
+     * by the status index, so it costs nothing to create and is ordered by Todo id.
+     * @param status The status to filter by
+     * @return an {@link OrderedMap} view of the matching Todos
      */
-    public String getCreatedAtDateTimeLong(long milliseconds) {
-        String fullDate = getDateString(milliseconds, CreatedAtQueryTypes.FULL_DATE);
-        String time = getDateString(milliseconds, CreatedAtQueryTypes.TIME);
+    private OrderedMap<Integer, ToDoEntity> getAllTodosWithStatus(ToDoStatus status) {
+        return new TodoIdMapView(todoIdsByStatus.get(status), todos::get);
+    }
 
-        return fullDate + " " + time;
+    /**
+     * Collects a Stream of Todos into an {@link OrderedMap}, keeping the order of the Stream
+     * @param todosStream The Todos to be collected
+     * @return an {@link OrderedMap} containing the Todos
+     */
+    private OrderedMap<Integer, ToDoEntity> toOrderedMap(Stream<ToDoEntity> todosStream) {
+        OrderedMap<Integer, ToDoEntity> result = new LinkedMap<>();
+        todosStream.forEach(todo -> result.put(todo.getId(), todo));
+        return result;
+    }
+
+    /**
+     * Resolves a Stream of Todo ids against the todos store, dropping ids deleted meanwhile
+     * @param ids The ids to be resolved
+     * @return a lazy Stream of the Todos
+     */
+    private Stream<ToDoEntity> resolve(Stream<Integer> ids) {
+        return ids.map(todos::get).filter(Objects::nonNull);
+    }
+
+    /**
+     * Gets a page of Todos in a given status ordered by id
+     * @param status The status to filter by
+     * @param limit Maximum number of Todos in the page
+     * @param cursor Cursor returned with the previous page (null for the first page)
+     * @return a {@link TodoPage} of at most @param(limit) Todos
+     */
+    private TodoPage getTodosPageWithStatus(ToDoStatus status, int limit, String cursor) {
+        checkLimit(limit);
+        int afterId = TodoPage.decodeCursor(cursor)[1];
+        return toPage(resolve(todoIdsByStatus.get(status).tailSet(afterId, false).stream()), limit);
+    }
+
+    /**
+     * Takes one page from a Stream of Todos ordered by id. Only @param(limit) + 1 Todos
+     * are pulled from the Stream, whatever its total size.
+     * @param todosInOrder The Todos to be paged
+     * @param limit Maximum number of Todos in the page
+     * @return a {@link TodoPage} of at most @param(limit) Todos
+     */
+    private TodoPage toPage(Stream<ToDoEntity> todosInOrder, int limit) {
+        List<ToDoEntity> page = todosInOrder.limit(limit + 1L).collect(Collectors.toCollection(ArrayList::new));
+        if (page.size() <= limit)
+            return new TodoPage(page, null);
+
+        page.remove(limit);
+        return new TodoPage(page, TodoPage.encodeCursor(0, page.get(limit - 1).getId()));
+    }
+
+    private static void checkLimit(int limit) {
+        if (limit <= 0)
+            throw new IllegalArgumentException("Page limit must be positive: " + limit);
+    }
+
+    /**
+     * Searches the Id, Title or Description property of the Todos
+     * @param query Query text to be searched
+     * @param property Todo Property to be searched
+     * @param useStrict boolean flag to decide how the search should be performed
+     * @param afterId Only Todos with a greater id are returned
+     * @return a lazy Stream of the matching Todos ordered by id
+     * @throws IllegalStateException if a User inputs an unexpected value for @Param(property)
+     */
+    private Stream<ToDoEntity> searchTodos(String query, TodoEntityProperties property, boolean useStrict, int afterId) {
+        return switch (property) {
+            case ID -> {
+                int id = Integer.parseInt(query);
+                yield id > afterId ? Stream.ofNullable(todos.get(id)) : Stream.empty();
+            }
+            case TITLE -> searchText(titleIndex, ToDoEntity::getCompactTitle, query, useStrict, afterId);
+            case DESCRIPTION -> searchText(descriptionIndex, ToDoEntity::getCompactDescription, query, useStrict, afterId);
+        };
+    }
+
+    /**
+     * Searches the CreatedAt property of the Todos
+     * @param query Query text to be searched
+     * @param queryType Date format/type the @param(query) is in.
+     * @param afterId Only Todos with a greater id are returned
+     * @return a lazy Stream of the matching Todos ordered by id
+     */
+    private Stream<ToDoEntity> searchTodos(String query, CreatedAtQueryTypes queryType, int afterId) {
+        if (columns == null)
+            return resolve(createdAtIndex.find(query, queryType).tailSet(afterId, false).stream());
+
+        LongPredicate matcher = TodoCreatedAtIndex.matcher(query, queryType);
+        return matcher == null ? Stream.empty() : resolve(columns.idsCreatedMatching(matcher, afterId));
+    }
+
+    /**
+     * Searches a text property of the Todos. Candidates are taken from the text index and
+     * verified against the actual text; the whole map is only scanned when the query is
+     * too short to be answered from the index.
+     * @param index The text index of the property to be searched
+     * @param property Getter of the pooled form of the property to be searched
+     * @param query Query text to be searched
+     * @param useStrict true to match the whole property, false to match a substring
+     * @param afterId Only Todos with a greater id are returned
+     * @return a lazy Stream of the matching Todos ordered by id
+     */
+    private Stream<ToDoEntity> searchText(TodoTextIndex index, Function<ToDoEntity, Object> property, String query, boolean useStrict, int afterId) {
+        Stream<Integer> candidateIds = useStrict ? index.findEqualCandidates(query, afterId) : index.findContainingCandidates(query, afterId);
+        Stream<ToDoEntity> candidates = candidateIds == null
+                ? todos.stream(afterId + 1)
+                : resolve(candidateIds);
+
+        return candidates.filter(textMatcher(property, query, useStrict));
+    }
+
+    /**
+     * Gets the exact test a Todo must pass to be returned by {@link #findTodoStream(String, TodoEntityProperties, boolean)},
+     * so Todos not held by any controller can be searched without building indexes
+     * @param query Query text to be searched
+     * @param property Todo Property to be searched
+     * @param useStrict boolean flag to decide how the search should be performed
+     * @return a predicate matching the Todos the search returns
+     * @throws NumberFormatException if @param(property) is ID and @param(query) is not a number
+     */
+    static Predicate<ToDoEntity> matcher(String query, TodoEntityProperties property, boolean useStrict) {
+        return switch (property) {
+            case ID -> {
+                int id = Integer.parseInt(query);
+                yield todo -> todo.getId() == id;
+            }
+            case TITLE -> textMatcher(ToDoEntity::getCompactTitle, query, useStrict);
+            case DESCRIPTION -> textMatcher(ToDoEntity::getCompactDescription, query, useStrict);
+        };
+    }
+
+    /**
+     * Gets the exact test a Todo must pass to be returned by {@link #findTodoStream(String, CreatedAtQueryTypes)}
+     * @param query Query text to be searched
+     * @param queryType Date format/type the @param(query) is in.
+     * @return a predicate matching the Todos the search returns (matching none if @param(query) cannot be parsed)
+     */
+    static Predicate<ToDoEntity> matcher(String query, CreatedAtQueryTypes queryType) {
+        LongPredicate createdAtMatcher = TodoCreatedAtIndex.matcher(query, queryType);
+        return createdAtMatcher == null ? todo -> false : todo -> createdAtMatcher.test(todo.getCreatedAt());
+    }
+
+    /**
+     * Gets a predicate checking a text property against a query, ignoring case. Long texts
+     * are kept encoded and shared by every Todo with the same text, so the result for each
+     * one is kept for the rest of the search and the text is only decoded once.
+     * @param property Getter of the pooled form of the property to be checked
+     * @param query Query text to be searched
+     * @param useStrict true to match the whole property, false to match a substring
+     * @return the predicate, safe to be used by many threads at once
+     */
+    private static Predicate<ToDoEntity> textMatcher(Function<ToDoEntity, Object> property, String query, boolean useStrict) {
+        Predicate<String> matches;
+        if(useStrict) {
+            matches = text -> IOCase.INSENSITIVE.checkEquals(text, query);
+        } else {
+            String foldedQuery = TodoTextIndex.fold(query);
+            matches = text -> TodoTextIndex.fold(text).contains(foldedQuery);
+        }
+
+        Map<CompactText, Boolean> encodedMatches = new ConcurrentHashMap<>();
+        return todo -> {
+            Object text = property.apply(todo);
+            if (!(text instanceof CompactText encoded))
+                return matches.test((String) text);
+
+            Boolean matched = encodedMatches.get(encoded);
+            if (matched == null) {
+                matched = matches.test(encoded.toString());
+                if (encodedMatches.size() < MAX_REMEMBERED_TEXT_MATCHES)
+                    encodedMatches.put(encoded, matched);
+            }
+            return matched;
+        };
+    }
+
+    /**
+     * Gets a Todo that is about to be updated
+     * @param todoId The id of the Todo
+     * @return The {@link ToDoEntity} todo
+     * @throws UnsupportedOperationException if the Todo does not exist
+     */
+    private ToDoEntity getExistingTodo(int todoId) {
+        ToDoEntity todo = todos.get(todoId);
+
+        if(todo == null)
+            throw new UnsupportedOperationException("Todo with id '" + todoId + "' not found");
+
+        return todo;
+    }
+
+    /**
+     * Counts a change about to be applied and logged in the current phase. The phase is read
+     * again once counted, so a change never stays counted in a phase that is being waited out.
+     * @return the phase to be handed to {@link #changeFinished(int)}
+     */
+    private int changeStarted() {
+        while (true) {
+            int phase = changePhase;
+            changesInProgress.incrementAndGet(phase);
+            if (changePhase == phase)
+                return phase;
+            changesInProgress.decrementAndGet(phase);
+        }
+    }
+
+    /**
+     * Stops counting a change once it is applied and logged
+     * @param phase The phase returned by {@link #changeStarted()}
+     */
+    private void changeFinished(int phase) {
+        changesInProgress.decrementAndGet(phase);
+    }
+
+    /**
+     * Gets the lock guarding writes to a Todo
+     * @param todoId The id of the Todo
+     * @return the lock stripe for @param(todoId)
+     */
+    private Object lockFor(int todoId) {
+        return TODO_LOCKS[lockStripe(todoId)];
+    }
+
+    /**
+     * @return the index in TODO_LOCKS of the lock guarding @param(todoId)
+     */
+    private int lockStripe(int todoId) {
+        return (todoId + lockOffset) & (LOCK_STRIPES - 1);
+    }
+
+    /**
+     * Puts a Todo into the todos store and adds it to the secondary indexes
+     * @param todo The Todo to be saved
+     */
+    private void saveTodo(ToDoEntity todo) {
+        todos.put(todo);
+        indexTodo(todo);
+    }
+
+    /**
+     * Adds a Todo to the secondary indexes. A columnar store answers status and CreatedAt
+     * queries from its own columns, so only the text indexes and statistics are kept for it.
+     * @param todo The Todo to be indexed
+     */
+    private void indexTodo(ToDoEntity todo) {
+        if (columns == null) {
+            todoIdsByStatus.get(todo.getStatus()).add(todo.getId());
+            createdAtIndex.add(todo.getId(), todo.getCreatedAt());
+        }
+        titleIndex.add(todo.getId(), todo.getTitle());
+        descriptionIndex.add(todo.getId(), todo.getDescription());
+        statistics.added(todo.getStatus(), todo.getCreatedAt());
+    }
+
+    /**
+     * Adds many Todos to the secondary indexes, one index update per batch
+     * @param batch The Todos to be indexed
+     */
+    private void indexTodos(List<ToDoEntity> batch) {
+        if (columns == null) {
+            for (ToDoStatus status : ToDoStatus.values())
+                todoIdsByStatus.get(status).addAll(batch.stream().filter(todo -> todo.getStatus() == status).map(ToDoEntity::getId).toList());
+            createdAtIndex.addAll(batch);
+        }
+        titleIndex.addAll(batch, ToDoEntity::getTitle);
+        descriptionIndex.addAll(batch, ToDoEntity::getDescription);
+        batch.forEach(todo -> statistics.added(todo.getStatus(), todo.getCreatedAt()));
+    }
+
+    /**
+     * Removes many Todos from the secondary indexes, one index update per batch
+     * @param batch The Todos to be removed
+     */
+    private void unindexTodos(List<ToDoEntity> batch) {
+        if (columns == null) {
+            for (ToDoStatus status : ToDoStatus.values())
+                todoIdsByStatus.get(status).removeAll(batch.stream().filter(todo -> todo.getStatus() == status).map(ToDoEntity::getId).toList());
+            createdAtIndex.removeAll(batch);
+        }
+        titleIndex.removeAll(batch, ToDoEntity::getTitle);
+        descriptionIndex.removeAll(batch, ToDoEntity::getDescription);
+        batch.forEach(todo -> statistics.removed(todo.getStatus(), todo.getCreatedAt()));
     }
 
     /**
-     * Converts Todo CreatedAt milliseconds to a formatted Short Date and Time
+     * Records new or changed Todos in the change log, if there is one
+     * @param saved The Todos to be recorded
+     * @return a future completing once the records are durable (null if nothing was recorded)
+     */
+    private CompletableFuture<Void> logSaved(List<ToDoEntity> saved) {
+        TodoChangeLog log = changeLog;
+        return log == null || saved.isEmpty() ? null : log.todosSaved(saved);
+    }
+
+    /**
+     * Records deleted Todos in the change log, if there is one
+     * @param deletedIds The ids of the deleted Todos
+     * @return a future completing once the records are durable (null if nothing was recorded)
+     */
+    private CompletableFuture<Void> logDeleted(List<Integer> deletedIds) {
+        TodoChangeLog log = changeLog;
+        return log == null || deletedIds.isEmpty() ? null : log.todosDeleted(deletedIds);
+    }
+
+    /**
+     * Tells the change log, if there is one, that the changes just recorded are applied
+     */
+    private void changesApplied() {
+        TodoChangeLog log = changeLog;
+        if (log != null)
+            log.changesApplied();
+    }
+
+    /**
+     * Combines the futures of two log appends, either of which may be null
+     */
+    private static CompletableFuture<Void> both(CompletableFuture<Void> first, CompletableFuture<Void> second) {
+        if (first == null || second == null)
+            return first != null ? first : second;
+        return CompletableFuture.allOf(first, second);
+    }
+
+    /**
+     * Groups Todo ids by the lock stripe guarding them
+     * @param todoIds The ids to be grouped
+     * @return the ids keyed by lock stripe
+     */
+    private Map<Integer, List<Integer>> groupByLockStripe(Collection<Integer> todoIds) {
+        Map<Integer, List<Integer>> idsByStripe = new TreeMap<>();
+        for (Integer id : todoIds)
+            idsByStripe.computeIfAbsent(lockStripe(id), k -> new ArrayList<>()).add(id);
+        return idsByStripe;
+    }
+
+    /**
+     * Removes a Todo from the secondary indexes
+     * @param todo The Todo to be removed
+     */
+    private void unindexTodo(ToDoEntity todo) {
+        if (columns == null) {
+            todoIdsByStatus.get(todo.getStatus()).remove(todo.getId());
+            createdAtIndex.remove(todo.getId(), todo.getCreatedAt());
+        }
+        titleIndex.remove(todo.getId(), todo.getTitle());
+        descriptionIndex.remove(todo.getId(), todo.getDescription());
+        statistics.removed(todo.getStatus(), todo.getCreatedAt());
+    }
+
+    /**
+     * Converts Todo CreatedAt milliseconds to a formatted Long Date and Time
      * @param milliseconds The datetime in milliseconds to be converted
      * @return A String containing the formatted Date and Time
      */
-    private String getCreatedAtDateTimeShort(long milliseconds) {
-        String shortDate = getDateString(milliseconds, CreatedAtQueryTypes.SHORT_DATE);
+    public String getCreatedAtDateTimeLong(long milliseconds) {
+        String fullDate = getDateString(milliseconds, CreatedAtQueryTypes.FULL_DATE);
         String time = getDateString(milliseconds, CreatedAtQueryTypes.TIME);
 
-        return shortDate + " " + time;
+        return fullDate + " " + time;
     }
 
     /**
@@ -252,32 +1141,16 @@ public final class ToDoController {
      * @return A String containing the formatted Date Or Time
      */
     private String getDateString(long milliseconds, CreatedAtQueryTypes queryType) {
-        //SimpleDateFormat formatter = new SimpleDateFormat("dd/MM/yyyy HH:mm");
-        StringBuilder stringBuilder = new StringBuilder();
-
-        Calendar calendar = Calendar.getInstance(Locale.getDefault());
-        calendar.setTimeInMillis(milliseconds);
-
-        LocalDateTime localDateTime = LocalDateTime.ofInstant(calendar.toInstant(), ZoneId.systemDefault());
-        switch (queryType) {
-            case FULL_DATE -> {
-                stringBuilder = new StringBuilder().append(localDateTime.getDayOfWeek())
-                        .append(" ").append(localDateTime.getDayOfMonth())
-                        .append(" ").append(localDateTime.getMonth().getDisplayName(TextStyle.FULL, Locale.UK))
-                        .append(" ").append(localDateTime.getYear());
-            }
-            case SHORT_DATE -> {
-                String dateFormat = "dd/MM/yyyy";
-                String dateStr = DateTimeFormatter.ofPattern(dateFormat).format(localDateTime.toLocalDate());
-                stringBuilder = new StringBuilder().append(dateStr);
-            }
-            case TIME -> {
-                String timeFormat = "HH:mm";
-                String timeStr = DateTimeFormatter.ofPattern(timeFormat).format(localDateTime.toLocalTime());
-                stringBuilder = new StringBuilder().append(timeStr);
-            }
-        }
+        LocalDateTime localDateTime = TodoCreatedAtIndex.toLocalDateTime(milliseconds);
 
-        return stringBuilder.toString();
+        return switch (queryType) {
+            case FULL_DATE -> new StringBuilder().append(localDateTime.getDayOfWeek())
+                    .append(" ").append(localDateTime.getDayOfMonth())
+                    .append(" ").append(localDateTime.getMonth().getDisplayName(TextStyle.FULL, Locale.UK))
+                    .append(" ").append(localDateTime.getYear()).toString();
+            case SHORT_DATE -> TodoCreatedAtIndex.SHORT_DATE_FORMAT.format(localDateTime);
+            case TIME -> TodoCreatedAtIndex.TIME_FORMAT.format(localDateTime);
+            case DATE_TIME -> TodoCreatedAtIndex.DATE_TIME_FORMAT.format(localDateTime);
+        };
     }
 }
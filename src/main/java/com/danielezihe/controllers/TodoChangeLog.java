@@ -0,0 +1,34 @@
+package com.danielezihe.controllers;
+
+import com.danielezihe.entities.ToDoEntity;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Receives the changes made to one user's Todos, so they can be made durable.
+ * Implementations must capture the Todos' state before returning, as callers record
+ * changes while holding the Todo locks and the Todos may change again right after.
+ */
+interface TodoChangeLog {
+    /**
+     * Records the current state of new or changed Todos
+     * @param todos The Todos that were saved
+     * @return a future completing once the change is as durable as configured
+     */
+    CompletableFuture<Void> todosSaved(List<ToDoEntity> todos);
+
+    /**
+     * Records deleted Todos
+     * @param todoIds The ids of the Todos that were deleted
+     * @return a future completing once the change is as durable as configured
+     */
+    CompletableFuture<Void> todosDeleted(List<Integer> todoIds);
+
+    /**
+     * Called after recorded changes have been applied to the Todos, once they can be read back
+     * from the controller. Called without any Todo lock held.
+     */
+    default void changesApplied() {
+    }
+}
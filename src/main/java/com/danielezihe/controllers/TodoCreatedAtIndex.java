@@ -0,0 +1,287 @@
+package com.danielezihe.controllers;
+
+import com.danielezihe.entities.ToDoEntity;
+import com.danielezihe.entities.util.CreatedAtQueryTypes;
+
+import java.time.*;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeFormatterBuilder;
+import java.time.format.DateTimeParseException;
+import java.time.format.ResolverStyle;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.TemporalAccessor;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.function.LongPredicate;
+import java.util.stream.Stream;
+
+/**
+ * Buckets Todo ids by calendar keys derived from their CreatedAt timestamp, so date and time
+ * queries are parsed once and answered with a single lookup instead of formatting every Todo.
+ * Dates are keyed by epoch-day, times by minute-of-day and date-times by epoch-minute.
+ * A set sorted by CreatedAt then id answers range queries.
+ * <p>
+ * Safe for concurrent use. Buckets are added and dropped atomically per key.
+ */
+final class TodoCreatedAtIndex {
+    static final DateTimeFormatter FULL_DATE_FORMAT = formatter("EEEE d MMMM uuuu");
+    static final DateTimeFormatter SHORT_DATE_FORMAT = formatter("dd/MM/uuuu");
+    static final DateTimeFormatter TIME_FORMAT = formatter("HH:mm");
+    static final DateTimeFormatter DATE_TIME_FORMAT = formatter("dd/MM/uuuu HH:mm");
+
+    private final ConcurrentHashMap<Long, NavigableSet<Integer>> idsByEpochDay = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Long, NavigableSet<Integer>> idsByMinuteOfDay = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Long, NavigableSet<Integer>> idsByEpochMinute = new ConcurrentHashMap<>();
+    private final NavigableSet<CreatedAtKey> keysByCreatedAt = new ConcurrentSkipListSet<>();
+
+    /**
+     * Adds a Todo to the index
+     * @param id The id of the Todo
+     * @param createdAt The CreatedAt milliseconds of the Todo
+     */
+    void add(int id, long createdAt) {
+        LocalDateTime dateTime = toLocalDateTime(createdAt);
+        addId(idsByEpochDay, epochDay(dateTime), id);
+        addId(idsByMinuteOfDay, minuteOfDay(dateTime), id);
+        addId(idsByEpochMinute, epochMinute(dateTime), id);
+        keysByCreatedAt.add(new CreatedAtKey(createdAt, id));
+    }
+
+    /**
+     * Adds many Todos to the index at once. Ids are grouped by bucket first, so each bucket
+     * is touched once per batch; a batch created at the same instant shares every bucket.
+     * @param todos The Todos to be indexed
+     */
+    void addAll(Collection<ToDoEntity> todos) {
+        Map<Long, List<Integer>> idsByEpochDay = new HashMap<>();
+        Map<Long, List<Integer>> idsByMinuteOfDay = new HashMap<>();
+        Map<Long, List<Integer>> idsByEpochMinute = new HashMap<>();
+        List<CreatedAtKey> keys = new ArrayList<>(todos.size());
+
+        for (ToDoEntity todo : todos) {
+            LocalDateTime dateTime = toLocalDateTime(todo.getCreatedAt());
+            idsByEpochDay.computeIfAbsent(epochDay(dateTime), k -> new ArrayList<>()).add(todo.getId());
+            idsByMinuteOfDay.computeIfAbsent(minuteOfDay(dateTime), k -> new ArrayList<>()).add(todo.getId());
+            idsByEpochMinute.computeIfAbsent(epochMinute(dateTime), k -> new ArrayList<>()).add(todo.getId());
+            keys.add(new CreatedAtKey(todo.getCreatedAt(), todo.getId()));
+        }
+
+        idsByEpochDay.forEach((key, ids) -> addIds(this.idsByEpochDay, key, ids));
+        idsByMinuteOfDay.forEach((key, ids) -> addIds(this.idsByMinuteOfDay, key, ids));
+        idsByEpochMinute.forEach((key, ids) -> addIds(this.idsByEpochMinute, key, ids));
+        keysByCreatedAt.addAll(keys);
+    }
+
+    /**
+     * Removes a Todo from the index
+     * @param id The id of the Todo
+     * @param createdAt The CreatedAt milliseconds of the Todo
+     */
+    void remove(int id, long createdAt) {
+        LocalDateTime dateTime = toLocalDateTime(createdAt);
+        removeId(idsByEpochDay, epochDay(dateTime), id);
+        removeId(idsByMinuteOfDay, minuteOfDay(dateTime), id);
+        removeId(idsByEpochMinute, epochMinute(dateTime), id);
+        keysByCreatedAt.remove(new CreatedAtKey(createdAt, id));
+    }
+
+    /**
+     * Removes many Todos from the index at once, touching each bucket once per batch
+     * @param todos The Todos to be removed
+     */
+    void removeAll(Collection<ToDoEntity> todos) {
+        Map<Long, List<Integer>> idsByEpochDay = new HashMap<>();
+        Map<Long, List<Integer>> idsByMinuteOfDay = new HashMap<>();
+        Map<Long, List<Integer>> idsByEpochMinute = new HashMap<>();
+
+        for (ToDoEntity todo : todos) {
+            LocalDateTime dateTime = toLocalDateTime(todo.getCreatedAt());
+            idsByEpochDay.computeIfAbsent(epochDay(dateTime), k -> new ArrayList<>()).add(todo.getId());
+            idsByMinuteOfDay.computeIfAbsent(minuteOfDay(dateTime), k -> new ArrayList<>()).add(todo.getId());
+            idsByEpochMinute.computeIfAbsent(epochMinute(dateTime), k -> new ArrayList<>()).add(todo.getId());
+            keysByCreatedAt.remove(new CreatedAtKey(todo.getCreatedAt(), todo.getId()));
+        }
+
+        idsByEpochDay.forEach((key, ids) -> removeIds(this.idsByEpochDay, key, ids));
+        idsByMinuteOfDay.forEach((key, ids) -> removeIds(this.idsByMinuteOfDay, key, ids));
+        idsByEpochMinute.forEach((key, ids) -> removeIds(this.idsByEpochMinute, key, ids));
+    }
+
+    /**
+     * Finds the ids of Todos created at the date or time in the query
+     * @param query Query text, formatted as described by @param(queryType)
+     * @param queryType Date format/type the @param(query) is in.
+     * @return the matching ids in ascending order. Empty if the query cannot be parsed
+     */
+    NavigableSet<Integer> find(String query, CreatedAtQueryTypes queryType) {
+        NavigableSet<Integer> ids;
+        try {
+            ids = switch (queryType) {
+                case FULL_DATE -> idsByEpochDay.get(LocalDate.from(FULL_DATE_FORMAT.parse(query.trim())).toEpochDay());
+                case SHORT_DATE -> idsByEpochDay.get(LocalDate.from(SHORT_DATE_FORMAT.parse(query.trim())).toEpochDay());
+                case TIME -> idsByMinuteOfDay.get(minuteOfDay(LocalTime.from(TIME_FORMAT.parse(query.trim()))));
+                case DATE_TIME -> idsByEpochMinute.get(epochMinute(LocalDateTime.from(DATE_TIME_FORMAT.parse(query.trim()))));
+            };
+        } catch (DateTimeParseException e) {
+            ids = null;
+        }
+
+        return ids == null ? Collections.emptyNavigableSet() : Collections.unmodifiableNavigableSet(ids);
+    }
+
+    /**
+     * Parses a date or time query into a test on CreatedAt milliseconds, matching exactly the
+     * Todos {@link #find(String, CreatedAtQueryTypes)} would return. Dates and date-times are
+     * first narrowed to a window of instants wide enough for any time zone offset, so only
+     * CreatedAt values in that window are converted to a calendar key.
+     * @param query Query text, formatted as described by @param(queryType)
+     * @param queryType Date format/type the @param(query) is in.
+     * @return the test, or null if the query cannot be parsed
+     */
+    static LongPredicate matcher(String query, CreatedAtQueryTypes queryType) {
+        try {
+            return switch (queryType) {
+                case FULL_DATE -> onDay(LocalDate.from(FULL_DATE_FORMAT.parse(query.trim())));
+                case SHORT_DATE -> onDay(LocalDate.from(SHORT_DATE_FORMAT.parse(query.trim())));
+                case TIME -> {
+                    long minute = minuteOfDay(LocalTime.from(TIME_FORMAT.parse(query.trim())));
+                    yield createdAt -> minuteOfDay(toLocalDateTime(createdAt)) == minute;
+                }
+                case DATE_TIME -> {
+                    LocalDateTime dateTime = LocalDateTime.from(DATE_TIME_FORMAT.parse(query.trim()));
+                    long minute = epochMinute(dateTime);
+                    long from = dateTime.toInstant(ZoneOffset.MAX).toEpochMilli();
+                    long to = dateTime.plusMinutes(1).toInstant(ZoneOffset.MIN).toEpochMilli();
+                    yield createdAt -> createdAt >= from && createdAt < to && epochMinute(toLocalDateTime(createdAt)) == minute;
+                }
+            };
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    private static LongPredicate onDay(LocalDate day) {
+        long epochDay = day.toEpochDay();
+        long from = day.atStartOfDay().toInstant(ZoneOffset.MAX).toEpochMilli();
+        long to = day.plusDays(1).atStartOfDay().toInstant(ZoneOffset.MIN).toEpochMilli();
+        return createdAt -> createdAt >= from && createdAt < to && epochDay(toLocalDateTime(createdAt)) == epochDay;
+    }
+
+    /**
+     * Lazily streams the ids of Todos created within a time range
+     * @param fromMillis Start of the range in milliseconds (inclusive)
+     * @param toMillis End of the range in milliseconds (inclusive)
+     * @return the matching ids ordered from oldest to newest
+     */
+    Stream<Integer> streamBetween(long fromMillis, long toMillis) {
+        if (fromMillis > toMillis)
+            return Stream.empty();
+
+        return keysByCreatedAt.subSet(new CreatedAtKey(fromMillis, Integer.MIN_VALUE), true, new CreatedAtKey(toMillis, Integer.MAX_VALUE), true)
+                .stream().map(CreatedAtKey::id);
+    }
+
+    /**
+     * Lazily streams the ids of all Todos from the most recently created one
+     * @return the ids ordered from newest to oldest
+     */
+    Stream<Integer> streamNewest() {
+        return keysByCreatedAt.descendingSet().stream().map(CreatedAtKey::id);
+    }
+
+    /**
+     * Parses a date-time range query of the form 'from..to', where each bound is either
+     * a date-time (Eg: 10/10/2021 10:30) or a date (Eg: 10/10/2021). A date as the upper
+     * bound includes that whole day.
+     * @param query The range query to be parsed
+     * @return a two element array holding the inclusive bounds in milliseconds, or null if the query cannot be parsed
+     */
+    static long[] parseRange(String query) {
+        String[] bounds = query.split("\\.\\.");
+        if (bounds.length != 2)
+            return null;
+
+        try {
+            return new long[]{parseBound(bounds[0].trim(), false), parseBound(bounds[1].trim(), true)};
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    private static long parseBound(String bound, boolean isUpperBound) {
+        ZoneId zone = ZoneId.systemDefault();
+        if (bound.contains(":")) {
+            LocalDateTime dateTime = LocalDateTime.from(DATE_TIME_FORMAT.parse(bound));
+            return (isUpperBound ? dateTime.plusMinutes(1) : dateTime).atZone(zone).toInstant().toEpochMilli() - (isUpperBound ? 1 : 0);
+        }
+
+        LocalDate date = LocalDate.from(SHORT_DATE_FORMAT.parse(bound));
+        return (isUpperBound ? date.plusDays(1) : date).atStartOfDay(zone).toInstant().toEpochMilli() - (isUpperBound ? 1 : 0);
+    }
+
+    /**
+     * Converts CreatedAt milliseconds to a date-time in the system time zone
+     * @param milliseconds The datetime in milliseconds to be converted
+     * @return the {@link LocalDateTime} for the milliseconds
+     */
+    static LocalDateTime toLocalDateTime(long milliseconds) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(milliseconds), ZoneId.systemDefault());
+    }
+
+    private static long epochDay(LocalDateTime dateTime) {
+        return dateTime.toLocalDate().toEpochDay();
+    }
+
+    private static long minuteOfDay(TemporalAccessor time) {
+        return LocalTime.from(time).truncatedTo(ChronoUnit.MINUTES).toSecondOfDay() / 60;
+    }
+
+    private static long epochMinute(LocalDateTime dateTime) {
+        return epochDay(dateTime) * 24 * 60 + minuteOfDay(dateTime);
+    }
+
+    private static void addId(ConcurrentHashMap<Long, NavigableSet<Integer>> buckets, long key, int id) {
+        addIds(buckets, key, List.of(id));
+    }
+
+    private static void addIds(ConcurrentHashMap<Long, NavigableSet<Integer>> buckets, long key, List<Integer> ids) {
+        buckets.compute(key, (k, bucket) -> {
+            if (bucket == null)
+                bucket = new ConcurrentSkipListSet<>();
+            bucket.addAll(ids);
+            return bucket;
+        });
+    }
+
+    private static void removeId(ConcurrentHashMap<Long, NavigableSet<Integer>> buckets, long key, int id) {
+        removeIds(buckets, key, List.of(id));
+    }
+
+    private static void removeIds(ConcurrentHashMap<Long, NavigableSet<Integer>> buckets, long key, List<Integer> ids) {
+        buckets.computeIfPresent(key, (k, bucket) -> {
+            bucket.removeAll(ids);
+            return bucket.isEmpty() ? null : bucket;
+        });
+    }
+
+    /**
+     * Builds a formatter parsing strictly, so dates that do not exist such as 31/02/2021 are
+     * rejected rather than moved to the nearest valid date
+     */
+    private static DateTimeFormatter formatter(String pattern) {
+        return new DateTimeFormatterBuilder().parseCaseInsensitive().appendPattern(pattern).toFormatter(Locale.UK)
+                .withResolverStyle(ResolverStyle.STRICT);
+    }
+
+    /**
+     * Sort key of the range index: CreatedAt first, then id to keep equal timestamps apart
+     */
+    private record CreatedAtKey(long createdAt, int id) implements Comparable<CreatedAtKey> {
+        @Override
+        public int compareTo(CreatedAtKey o) {
+            int byCreatedAt = Long.compare(createdAt, o.createdAt);
+            return byCreatedAt != 0 ? byCreatedAt : Integer.compare(id, o.id);
+        }
+    }
+}
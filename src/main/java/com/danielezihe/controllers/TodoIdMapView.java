@@ -0,0 +1,168 @@
+package com.danielezihe.controllers;
+
+import com.danielezihe.entities.ToDoEntity;
+import org.apache.commons.collections4.OrderedMap;
+import org.apache.commons.collections4.OrderedMapIterator;
+
+import java.util.*;
+import java.util.function.IntFunction;
+
+/**
+ * Read-only {@link OrderedMap} view over a set of Todo ids. Each id is resolved to its
+ * {@link ToDoEntity} only when it is accessed, so creating the view copies nothing.
+ * The view is ordered by Todo id and reflects later changes to the backing id set.
+ */
+final class TodoIdMapView extends AbstractMap<Integer, ToDoEntity> implements OrderedMap<Integer, ToDoEntity> {
+    private final NavigableSet<Integer> ids;
+    private final IntFunction<ToDoEntity> resolver;
+
+    TodoIdMapView(NavigableSet<Integer> ids, IntFunction<ToDoEntity> resolver) {
+        this.ids = ids;
+        this.resolver = resolver;
+    }
+
+    @Override
+    public ToDoEntity get(Object key) {
+        if (key instanceof Integer id && ids.contains(id))
+            return resolver.apply(id);
+        return null;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return ids.contains(key);
+    }
+
+    @Override
+    public int size() {
+        return ids.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return ids.isEmpty();
+    }
+
+    @Override
+    public Set<Integer> keySet() {
+        return Collections.unmodifiableNavigableSet(ids);
+    }
+
+    @Override
+    public Set<Entry<Integer, ToDoEntity>> entrySet() {
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<Entry<Integer, ToDoEntity>> iterator() {
+                Iterator<Integer> idIterator = ids.iterator();
+                return new Iterator<>() {
+                    private Entry<Integer, ToDoEntity> nextEntry;
+
+                    @Override
+                    public boolean hasNext() {
+                        // Skips ids whose Todo was deleted after the id was read
+                        while (nextEntry == null && idIterator.hasNext()) {
+                            Integer id = idIterator.next();
+                            ToDoEntity todo = resolver.apply(id);
+                            if (todo != null)
+                                nextEntry = new SimpleImmutableEntry<>(id, todo);
+                        }
+                        return nextEntry != null;
+                    }
+
+                    @Override
+                    public Entry<Integer, ToDoEntity> next() {
+                        if (!hasNext())
+                            throw new NoSuchElementException();
+                        Entry<Integer, ToDoEntity> entry = nextEntry;
+                        nextEntry = null;
+                        return entry;
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return ids.size();
+            }
+        };
+    }
+
+    @Override
+    public Integer firstKey() {
+        return ids.first();
+    }
+
+    @Override
+    public Integer lastKey() {
+        return ids.last();
+    }
+
+    @Override
+    public Integer nextKey(Integer key) {
+        return ids.higher(key);
+    }
+
+    @Override
+    public Integer previousKey(Integer key) {
+        return ids.lower(key);
+    }
+
+    @Override
+    public OrderedMapIterator<Integer, ToDoEntity> mapIterator() {
+        return new OrderedMapIterator<>() {
+            private Integer current;
+            private Integer cursor = ids.isEmpty() ? null : ids.first();
+
+            @Override
+            public boolean hasNext() {
+                return cursor != null;
+            }
+
+            @Override
+            public Integer next() {
+                if (cursor == null)
+                    throw new NoSuchElementException();
+                current = cursor;
+                cursor = ids.higher(current);
+                return current;
+            }
+
+            @Override
+            public boolean hasPrevious() {
+                return (cursor == null ? (ids.isEmpty() ? null : ids.last()) : ids.lower(cursor)) != null;
+            }
+
+            @Override
+            public Integer previous() {
+                Integer previous = cursor == null ? (ids.isEmpty() ? null : ids.last()) : ids.lower(cursor);
+                if (previous == null)
+                    throw new NoSuchElementException();
+                current = previous;
+                cursor = previous;
+                return current;
+            }
+
+            @Override
+            public Integer getKey() {
+                if (current == null)
+                    throw new IllegalStateException();
+                return current;
+            }
+
+            @Override
+            public ToDoEntity getValue() {
+                return resolver.apply(getKey());
+            }
+
+            @Override
+            public ToDoEntity setValue(ToDoEntity value) {
+                throw new UnsupportedOperationException("Todo views are read-only");
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException("Todo views are read-only");
+            }
+        };
+    }
+}
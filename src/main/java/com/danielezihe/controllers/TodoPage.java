@@ -0,0 +1,65 @@
+package com.danielezihe.controllers;
+
+import com.danielezihe.entities.ToDoEntity;
+
+import java.nio.ByteBuffer;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * A bounded page of Todos returned by the paginated {@link ToDoController} methods.
+ * Pass {@link #getNextCursor()} back to the same method to get the following page.
+ */
+public final class TodoPage {
+    private final List<ToDoEntity> todos;
+    private final String nextCursor;
+
+    TodoPage(List<ToDoEntity> todos, String nextCursor) {
+        this.todos = todos;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<ToDoEntity> getTodos() {
+        return todos;
+    }
+
+    /**
+     * @return an opaque continuation token for the next page (null if this is the last page)
+     */
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public boolean hasNext() {
+        return nextCursor != null;
+    }
+
+    /**
+     * Encodes a position in a listing as an opaque cursor
+     * @param statusOrdinal Ordinal of the status section the position is in (0 for single section results)
+     * @param todoId Id of the last Todo returned
+     * @return the encoded cursor
+     */
+    static String encodeCursor(int statusOrdinal, int todoId) {
+        long position = ((long) statusOrdinal << 32) | (todoId & 0xFFFFFFFFL);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(ByteBuffer.allocate(Long.BYTES).putLong(position).array());
+    }
+
+    /**
+     * Decodes a cursor produced by {@link #encodeCursor(int, int)}
+     * @param cursor The cursor to be decoded (null for the first page)
+     * @return a two element array holding the status ordinal and the last Todo id
+     * @throws IllegalArgumentException if the cursor is malformed
+     */
+    static int[] decodeCursor(String cursor) {
+        if (cursor == null)
+            return new int[]{0, 0};
+
+        byte[] bytes = Base64.getUrlDecoder().decode(cursor);
+        if (bytes.length != Long.BYTES)
+            throw new IllegalArgumentException("Invalid cursor: " + cursor);
+
+        long position = ByteBuffer.wrap(bytes).getLong();
+        return new int[]{(int) (position >>> 32), (int) position};
+    }
+}
@@ -0,0 +1,366 @@
+package com.danielezihe.controllers;
+
+import com.danielezihe.entities.ToDoEntity;
+
+import java.util.*;
+import java.util.function.IntFunction;
+import java.util.function.IntSupplier;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Ranked, multi-term boolean search over the Title and Description of a user's Todos.
+ * <p>
+ * Queries are made of words combined with the upper case operators AND, OR and NOT and
+ * grouped with parentheses. Words next to each other are joined with AND, and AND binds
+ * tighter than OR. Eg: {@code gym AND morning NOT cancelled}, {@code (gym OR run) weekend}.
+ * Words are matched case-insensitively against the word indexes of both properties.
+ * <p>
+ * Matches are scored by summing, for every word that is not negated, an inverse document
+ * frequency weight counted twice for a Title match and once for a Description match. Only
+ * the best K matches are kept, in a bounded heap, so the full match set is never sorted.
+ * Matches are streamed from the posting lists and never collected into sets.
+ */
+final class TodoQueryEngine {
+    private static final double TITLE_WEIGHT = 2.0;
+    private static final double DESCRIPTION_WEIGHT = 1.0;
+    private static final long UNBOUNDED = Long.MAX_VALUE;
+
+    private final TodoTextIndex titleIndex;
+    private final TodoTextIndex descriptionIndex;
+    private final IntFunction<ToDoEntity> resolver;
+    private final Supplier<Stream<ToDoEntity>> allTodos;
+    private final IntSupplier todoCount;
+
+    TodoQueryEngine(TodoTextIndex titleIndex, TodoTextIndex descriptionIndex, IntFunction<ToDoEntity> resolver,
+                    Supplier<Stream<ToDoEntity>> allTodos, IntSupplier todoCount) {
+        this.titleIndex = titleIndex;
+        this.descriptionIndex = descriptionIndex;
+        this.resolver = resolver;
+        this.allTodos = allTodos;
+        this.todoCount = todoCount;
+    }
+
+    /**
+     * Runs a query and returns the best matches
+     * @param query The boolean query to be run
+     * @param limit Maximum number of Todos to return
+     * @return the matching Todos, best match first
+     * @throws IllegalArgumentException if the query is malformed or @param(limit) is not positive
+     */
+    List<ToDoEntity> search(String query, int limit) {
+        if (limit <= 0)
+            throw new IllegalArgumentException("Result limit must be positive: " + limit);
+
+        Node root = new Parser(query).parse();
+        List<String> scoringTokens = new ArrayList<>();
+        root.collectScoringTokens(scoringTokens, false);
+        Map<String, Double> weights = inverseDocumentFrequencies(scoringTokens);
+
+        Comparator<Map.Entry<Integer, Double>> worstFirst = Map.Entry.<Integer, Double>comparingByValue()
+                .thenComparing(Map.Entry.<Integer, Double>comparingByKey().reversed());
+        PriorityQueue<Map.Entry<Integer, Double>> best = new PriorityQueue<>(Math.min(limit, 64) + 1, worstFirst);
+
+        matches(root).forEach(id -> {
+            Map.Entry<Integer, Double> scored = new AbstractMap.SimpleImmutableEntry<>(id, score(id, weights));
+            if (best.size() < limit) {
+                best.add(scored);
+            } else if (worstFirst.compare(scored, best.peek()) > 0) {
+                best.poll();
+                best.add(scored);
+            }
+        });
+
+        List<ToDoEntity> results = new ArrayList<>(best.size());
+        while (!best.isEmpty()) {
+            ToDoEntity todo = resolver.apply(best.poll().getKey());
+            if (todo != null)
+                results.add(todo);
+        }
+        Collections.reverse(results);
+        return results;
+    }
+
+    private double score(int id, Map<String, Double> weights) {
+        double score = 0;
+        for (Map.Entry<String, Double> weight : weights.entrySet()) {
+            if (titleIndex.findTokenIds(weight.getKey()).contains(id))
+                score += TITLE_WEIGHT * weight.getValue();
+            if (descriptionIndex.findTokenIds(weight.getKey()).contains(id))
+                score += DESCRIPTION_WEIGHT * weight.getValue();
+        }
+        return score;
+    }
+
+    private Map<String, Double> inverseDocumentFrequencies(List<String> tokens) {
+        double todos = Math.max(todoCount.getAsInt(), 1);
+        Map<String, Double> weights = new HashMap<>();
+        for (String token : tokens) {
+            int frequency = titleIndex.countTokenIds(token) + descriptionIndex.countTokenIds(token);
+            weights.put(token, Math.log(1 + todos / Math.max(frequency, 1)));
+        }
+        return weights;
+    }
+
+    private boolean hasToken(String token, int id) {
+        return titleIndex.findTokenIds(token).contains(id) || descriptionIndex.findTokenIds(token).contains(id);
+    }
+
+    private long countWithToken(String token) {
+        return (long) titleIndex.countTokenIds(token) + descriptionIndex.countTokenIds(token);
+    }
+
+    /**
+     * Lazily streams the ids of the Todos with a word in either property, each id once
+     */
+    private Stream<Integer> idsWithToken(String token) {
+        NavigableSet<Integer> titleIds = titleIndex.findTokenIds(token);
+        return Stream.concat(titleIds.stream(), descriptionIndex.findTokenIds(token).stream().filter(id -> !titleIds.contains(id)));
+    }
+
+    /**
+     * A node of a parsed query. Nodes are evaluated lazily: the node with the fewest
+     * candidates streams its ids straight from the posting lists, and every other node only
+     * tests those ids, so no posting list is copied and NOT never materializes the complement.
+     */
+    private interface Node {
+        /**
+         * @return true if the Todo with @param(id) matches the node
+         */
+        boolean matches(TodoQueryEngine engine, int id);
+
+        /**
+         * @return an upper bound of the number of matches, or UNBOUNDED if the matches can only
+         * be found by testing every Todo
+         */
+        long cost(TodoQueryEngine engine);
+
+        /**
+         * Lazily streams the matches, each id once. Only called when {@link #cost(TodoQueryEngine)} is bounded.
+         */
+        Stream<Integer> evaluate(TodoQueryEngine engine);
+
+        void collectScoringTokens(List<String> tokens, boolean negated);
+    }
+
+    /**
+     * @return the matches of the whole query, testing every Todo only when no node bounds them
+     */
+    private Stream<Integer> matches(Node root) {
+        if (root.cost(this) != UNBOUNDED)
+            return root.evaluate(this);
+        return allTodos.get().map(ToDoEntity::getId).filter(id -> root.matches(this, id));
+    }
+
+    private record Term(List<String> tokens) implements Node {
+        @Override
+        public boolean matches(TodoQueryEngine engine, int id) {
+            if (tokens.isEmpty())
+                return false;
+            for (String token : tokens) {
+                if (!engine.hasToken(token, id))
+                    return false;
+            }
+            return true;
+        }
+
+        @Override
+        public long cost(TodoQueryEngine engine) {
+            return tokens.stream().mapToLong(engine::countWithToken).min().orElse(0);
+        }
+
+        /**
+         * Streams the ids of the rarest word and tests them for the other words
+         */
+        @Override
+        public Stream<Integer> evaluate(TodoQueryEngine engine) {
+            if (tokens.isEmpty())
+                return Stream.empty();
+
+            String rarest = Collections.min(tokens, Comparator.comparingLong(engine::countWithToken));
+            return engine.idsWithToken(rarest).filter(id -> matches(engine, id));
+        }
+
+        @Override
+        public void collectScoringTokens(List<String> tokens, boolean negated) {
+            if (!negated)
+                tokens.addAll(this.tokens);
+        }
+    }
+
+    private record Not(Node operand) implements Node {
+        @Override
+        public boolean matches(TodoQueryEngine engine, int id) {
+            return !operand.matches(engine, id);
+        }
+
+        @Override
+        public long cost(TodoQueryEngine engine) {
+            return UNBOUNDED;
+        }
+
+        @Override
+        public Stream<Integer> evaluate(TodoQueryEngine engine) {
+            throw new IllegalStateException("NOT has no bounded matches");
+        }
+
+        @Override
+        public void collectScoringTokens(List<String> tokens, boolean negated) {
+            operand.collectScoringTokens(tokens, !negated);
+        }
+    }
+
+    private record And(List<Node> operands) implements Node {
+        @Override
+        public boolean matches(TodoQueryEngine engine, int id) {
+            for (Node operand : operands) {
+                if (!operand.matches(engine, id))
+                    return false;
+            }
+            return true;
+        }
+
+        @Override
+        public long cost(TodoQueryEngine engine) {
+            return operands.stream().mapToLong(operand -> operand.cost(engine)).min().orElse(UNBOUNDED);
+        }
+
+        /**
+         * Streams the matches of the cheapest operand and tests them against the others,
+         * so negated operands are applied as filters
+         */
+        @Override
+        public Stream<Integer> evaluate(TodoQueryEngine engine) {
+            Node cheapest = Collections.min(operands, Comparator.comparingLong(operand -> operand.cost(engine)));
+            return cheapest.evaluate(engine).filter(id -> matches(engine, id));
+        }
+
+        @Override
+        public void collectScoringTokens(List<String> tokens, boolean negated) {
+            operands.forEach(operand -> operand.collectScoringTokens(tokens, negated));
+        }
+    }
+
+    private record Or(List<Node> operands) implements Node {
+        @Override
+        public boolean matches(TodoQueryEngine engine, int id) {
+            for (Node operand : operands) {
+                if (operand.matches(engine, id))
+                    return true;
+            }
+            return false;
+        }
+
+        @Override
+        public long cost(TodoQueryEngine engine) {
+            long cost = 0;
+            for (Node operand : operands) {
+                long operandCost = operand.cost(engine);
+                if (operandCost == UNBOUNDED)
+                    return UNBOUNDED;
+                cost += operandCost;
+            }
+            return cost;
+        }
+
+        /**
+         * Streams the matches of each operand in turn, skipping those an earlier operand
+         * has already streamed
+         */
+        @Override
+        public Stream<Integer> evaluate(TodoQueryEngine engine) {
+            return IntStream.range(0, operands.size()).boxed().flatMap(
+                    i -> operands.get(i).evaluate(engine).filter(id -> operands.subList(0, i).stream().noneMatch(earlier -> earlier.matches(engine, id)))
+            );
+        }
+
+        @Override
+        public void collectScoringTokens(List<String> tokens, boolean negated) {
+            operands.forEach(operand -> operand.collectScoringTokens(tokens, negated));
+        }
+    }
+
+    /**
+     * Recursive descent parser for the query grammar:
+     * <pre>
+     * or   := and (OR and)*
+     * and  := not ((AND)? not)*
+     * not  := NOT not | '(' or ')' | word
+     * </pre>
+     */
+    private static final class Parser {
+        private final List<String> symbols = new ArrayList<>();
+        private int position;
+
+        /**
+         * Splits a query into symbols. Words without a letter or digit (Eg: '&') are dropped, as
+         * they yield no token and would otherwise turn into a Term no Todo can match.
+         */
+        Parser(String query) {
+            for (String part : query.replace("(", " ( ").replace(")", " ) ").trim().split("\\s+"))
+                if (!part.isEmpty() && (part.equals("(") || isOperator(part) || !TodoTextIndex.tokens(TodoTextIndex.fold(part)).isEmpty()))
+                    symbols.add(part);
+        }
+
+        Node parse() {
+            if (symbols.isEmpty())
+                throw new IllegalArgumentException("Query has no words to search for");
+
+            Node root = parseOr();
+            if (position != symbols.size())
+                throw new IllegalArgumentException("Unexpected '" + symbols.get(position) + "' in query");
+            return root;
+        }
+
+        private Node parseOr() {
+            List<Node> operands = new ArrayList<>(List.of(parseAnd()));
+            while (accept("OR"))
+                operands.add(parseAnd());
+            return operands.size() == 1 ? operands.get(0) : new Or(operands);
+        }
+
+        private Node parseAnd() {
+            List<Node> operands = new ArrayList<>(List.of(parseNot()));
+            while (position < symbols.size() && !peekIs("OR") && !peekIs(")")) {
+                accept("AND");
+                operands.add(parseNot());
+            }
+            return operands.size() == 1 ? operands.get(0) : new And(operands);
+        }
+
+        private Node parseNot() {
+            if (accept("NOT"))
+                return new Not(parseNot());
+
+            if (accept("(")) {
+                Node inner = parseOr();
+                if (!accept(")"))
+                    throw new IllegalArgumentException("Missing ')' in query");
+                return inner;
+            }
+
+            if (position >= symbols.size() || isOperator(symbols.get(position)))
+                throw new IllegalArgumentException("Expected a word in query");
+
+            List<String> tokens = new ArrayList<>(TodoTextIndex.tokens(TodoTextIndex.fold(symbols.get(position++))));
+            return new Term(tokens);
+        }
+
+        private boolean accept(String symbol) {
+            if (peekIs(symbol)) {
+                position++;
+                return true;
+            }
+            return false;
+        }
+
+        private boolean peekIs(String symbol) {
+            return position < symbols.size() && symbols.get(position).equals(symbol);
+        }
+
+        private static boolean isOperator(String symbol) {
+            return symbol.equals("AND") || symbol.equals("OR") || symbol.equals("NOT") || symbol.equals(")");
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package com.danielezihe.controllers;
+
+import com.danielezihe.entities.ToDoEntity;
+import com.danielezihe.entities.util.ToDoStatus;
+import com.danielezihe.entities.util.TodoStoreTypes;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Local files holding the Todos of users whose {@link ToDoController} has been evicted
+ * from memory, one file per user. A file is written to a temporary name and moved into
+ * place, so a reader never sees a half written file.
+ * <p>
+ * File layout: a format version, the last Todo id handed out and the number of Todos,
+ * followed for each Todo by its id, CreatedAt, status ordinal, Title and Description.
+ * Texts are stored as a byte length (-1 for null) and UTF-8 bytes.
+ */
+final class TodoSpillFiles {
+    private static final int FORMAT_VERSION = 1;
+
+    private final Path directory;
+
+    /**
+     * Opens a spill directory, creating it if needed. Files left by an earlier run are
+     * deleted: they only cache Todos that the snapshot and write-ahead log already hold, and
+     * startup rebuilds every user's Todos from those.
+     * @param directory The directory the files are kept in
+     * @throws UncheckedIOException if the directory cannot be prepared
+     */
+    TodoSpillFiles(Path directory) {
+        this.directory = directory;
+        try {
+            Files.createDirectories(directory);
+            try (Stream<Path> files = Files.list(directory)) {
+                for (Path file : files.toList())
+                    Files.deleteIfExists(file);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot prepare Todo spill directory " + directory, e);
+        }
+    }
+
+    /**
+     * Writes a user's Todos, replacing any earlier file of the user
+     * @param userId The id of the user owning the Todos
+     * @param toDoController The controller holding the Todos
+     * @throws IOException if the file cannot be written
+     */
+    void write(int userId, ToDoController toDoController) throws IOException {
+        Path temporaryFile = directory.resolve(userId + ".todos.tmp");
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporaryFile)))) {
+            output.writeInt(FORMAT_VERSION);
+            writeTodos(output, toDoController);
+        }
+        Files.move(temporaryFile, fileOf(userId), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Reads a user's Todos back
+     * @param userId The id of the user owning the Todos
+     * @param storeType The store layout of the returned controller
+     * @return a {@link ToDoController} holding the Todos, or null if the user has no file
+     * @throws IOException if the file cannot be read
+     */
+    ToDoController read(int userId, TodoStoreTypes storeType) throws IOException {
+        DecodedTodos decoded = decode(userId);
+        return decoded == null ? null : new ToDoController(storeType, decoded.todos(), decoded.lastTodoId());
+    }
+
+    /**
+     * Reads a user's Todos back as plain entities, building no controller or index
+     * @param userId The id of the user owning the Todos
+     * @return the Todos ordered by id, or null if the user has no file
+     * @throws IOException if the file cannot be read
+     */
+    List<ToDoEntity> decodeTodos(int userId) throws IOException {
+        DecodedTodos decoded = decode(userId);
+        return decoded == null ? null : decoded.todos();
+    }
+
+    private record DecodedTodos(int lastTodoId, List<ToDoEntity> todos) {
+    }
+
+    private DecodedTodos decode(int userId) throws IOException {
+        Path file = fileOf(userId);
+        if (!Files.exists(file))
+            return null;
+
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            int version = input.readInt();
+            if (version != FORMAT_VERSION)
+                throw new IOException("Unsupported Todo spill file version " + version + " in " + file);
+
+            int lastTodoId = input.readInt();
+            int count = input.readInt();
+            ToDoStatus[] statuses = ToDoStatus.values();
+            List<ToDoEntity> todos = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                int id = input.readInt();
+                long createdAt = input.readLong();
+                ToDoStatus status = statuses[input.readByte()];
+                todos.add(new ToDoEntity(id, readText(input), readText(input), status, createdAt));
+            }
+            return new DecodedTodos(lastTodoId, todos);
+        }
+    }
+
+    /**
+     * Reads a user's encoded Todos without decoding them
+     * @param userId The id of the user owning the Todos
+     * @return the Todos as written by {@link #writeTodos(DataOutputStream, ToDoController)},
+     * or null if the user has no file
+     * @throws IOException if the file cannot be read
+     */
+    byte[] readEncoded(int userId) throws IOException {
+        Path file = fileOf(userId);
+        if (!Files.exists(file))
+            return null;
+
+        byte[] bytes = Files.readAllBytes(file);
+        int version = bytes.length < Integer.BYTES ? -1 : ByteBuffer.wrap(bytes).getInt();
+        if (version != FORMAT_VERSION)
+            throw new IOException("Unsupported Todo spill file version " + version + " in " + file);
+        return Arrays.copyOfRange(bytes, Integer.BYTES, bytes.length);
+    }
+
+    /**
+     * Encodes the Todos of a controller: the last Todo id handed out and the number of Todos,
+     * followed for each Todo by its id, CreatedAt, status ordinal, Title and Description
+     * @param output The stream the Todos are written to
+     * @param toDoController The controller holding the Todos
+     */
+    static void writeTodos(DataOutputStream output, ToDoController toDoController) throws IOException {
+        List<ToDoEntity> todos = toDoController.getAllTodos().map(Map.Entry::getValue)
+                .sorted(Comparator.comparingInt(ToDoEntity::getId)).toList();
+
+        output.writeInt(toDoController.getLastTodoId());
+        output.writeInt(todos.size());
+        for (ToDoEntity todo : todos) {
+            output.writeInt(todo.getId());
+            output.writeLong(todo.getCreatedAt());
+            output.writeByte(todo.getStatus().ordinal());
+            writeText(output, todo.getTitle());
+            writeText(output, todo.getDescription());
+        }
+    }
+
+    private Path fileOf(int userId) {
+        return directory.resolve(userId + ".todos");
+    }
+
+    static void writeText(DataOutputStream output, String text) throws IOException {
+        if (text == null) {
+            output.writeInt(-1);
+            return;
+        }
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+    static String readText(DataInputStream input) throws IOException {
+        int length = input.readInt();
+        if (length < 0)
+            return null;
+        byte[] bytes = new byte[length];
+        input.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,89 @@
+package com.danielezihe.controllers;
+
+import com.danielezihe.entities.util.ToDoStatus;
+
+import java.time.LocalDate;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Running statistics of a user's Todos, updated on every create, status change and delete
+ * so that they can be read in constant time without touching the {@link TodoStore}.
+ * Keeps a counter per {@link ToDoStatus} and a histogram of Todos created per day.
+ * <p>
+ * Each counter is updated atomically; a reader racing a status change may briefly see the
+ * Todo counted under both statuses, never under neither.
+ */
+final class TodoStatistics {
+    private final Map<ToDoStatus, AtomicInteger> countsByStatus = new EnumMap<>(ToDoStatus.class);
+    private final ConcurrentHashMap<Long, Integer> createdPerEpochDay = new ConcurrentHashMap<>();
+
+    TodoStatistics() {
+        for (ToDoStatus status : ToDoStatus.values())
+            countsByStatus.put(status, new AtomicInteger());
+    }
+
+    /**
+     * Records a new Todo
+     * @param status The status the Todo was saved in
+     * @param createdAt The CreatedAt milliseconds of the Todo
+     */
+    void added(ToDoStatus status, long createdAt) {
+        countsByStatus.get(status).incrementAndGet();
+        createdPerEpochDay.merge(epochDay(createdAt), 1, Integer::sum);
+    }
+
+    /**
+     * Records a removed Todo
+     * @param status The status the Todo was in
+     * @param createdAt The CreatedAt milliseconds of the Todo
+     */
+    void removed(ToDoStatus status, long createdAt) {
+        countsByStatus.get(status).decrementAndGet();
+        createdPerEpochDay.computeIfPresent(epochDay(createdAt), (day, total) -> total > 1 ? total - 1 : null);
+    }
+
+    /**
+     * Records Todos moving from one status to another
+     * @param oldStatus The status the Todos left
+     * @param newStatus The status the Todos entered
+     * @param count The number of Todos
+     */
+    void statusChanged(ToDoStatus oldStatus, ToDoStatus newStatus, int count) {
+        countsByStatus.get(newStatus).addAndGet(count);
+        countsByStatus.get(oldStatus).addAndGet(-count);
+    }
+
+    /**
+     * @param status The status to count
+     * @return the number of Todos in @param(status)
+     */
+    int count(ToDoStatus status) {
+        return countsByStatus.get(status).get();
+    }
+
+    /**
+     * @param day The day to count
+     * @return the number of Todos created on @param(day)
+     */
+    int countCreatedOn(LocalDate day) {
+        return createdPerEpochDay.getOrDefault(day.toEpochDay(), 0);
+    }
+
+    /**
+     * @return a copy of the days with at least one Todo and the number of Todos created on each, oldest first
+     */
+    NavigableMap<LocalDate, Integer> createdPerDay() {
+        NavigableMap<LocalDate, Integer> histogram = new TreeMap<>();
+        createdPerEpochDay.forEach((day, total) -> histogram.put(LocalDate.ofEpochDay(day), total));
+        return histogram;
+    }
+
+    private static long epochDay(long createdAt) {
+        return TodoCreatedAtIndex.toLocalDateTime(createdAt).toLocalDate().toEpochDay();
+    }
+}
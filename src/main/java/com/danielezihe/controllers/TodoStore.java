@@ -0,0 +1,52 @@
+package com.danielezihe.controllers;
+
+import com.danielezihe.entities.ToDoEntity;
+
+import java.util.stream.Stream;
+
+/**
+ * Primary store of a user's Todos, keyed by the Todo id. Ids are allocated densely by
+ * {@link ToDoController}, so implementations may index arrays by id directly.
+ * Implementations must be safe for concurrent use.
+ */
+interface TodoStore {
+    /**
+     * Gets a Todo using it's id
+     * @param id The id of the Todo
+     * @return The {@link ToDoEntity} todo (null if Todo does not exist)
+     */
+    ToDoEntity get(int id);
+
+    /**
+     * Puts a Todo into the store, replacing any Todo with the same id
+     * @param todo The Todo to be stored
+     * @return the replaced {@link ToDoEntity} todo (null if there was none)
+     */
+    ToDoEntity put(ToDoEntity todo);
+
+    /**
+     * Removes a Todo from the store
+     * @param id The id of the Todo to be removed
+     * @return the removed {@link ToDoEntity} todo (null if Todo does not exist)
+     */
+    ToDoEntity remove(int id);
+
+    /**
+     * @return the number of Todos in the store
+     */
+    int size();
+
+    /**
+     * Lazily streams the Todos in the store, starting at an id
+     * @param fromId The smallest id to be included
+     * @return a Stream of the Todos with an id of at least @param(fromId) ordered by id
+     */
+    Stream<ToDoEntity> stream(int fromId);
+
+    /**
+     * @return a Stream of all Todos in the store ordered by id
+     */
+    default Stream<ToDoEntity> stream() {
+        return stream(0);
+    }
+}
@@ -0,0 +1,249 @@
+package com.danielezihe.controllers;
+
+import com.danielezihe.entities.ToDoEntity;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Incrementally maintained full-text index over one text property of the Todos.
+ * Case-folded words are indexed to answer strict (whole value) queries and case-folded
+ * n-grams are indexed to answer substring queries. Both only return candidate ids;
+ * callers still verify each candidate against the actual text.
+ * <p>
+ * Safe for concurrent use. Posting lists are added and dropped atomically per key.
+ */
+final class TodoTextIndex {
+    static final int GRAM_SIZE = 3;
+
+    private final ConcurrentHashMap<String, PostingList> tokenPostings = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, PostingList> gramPostings = new ConcurrentHashMap<>();
+
+    /**
+     * Adds a Todo's text to the index
+     * @param id The id of the Todo
+     * @param text The text to be indexed
+     */
+    void add(int id, String text) {
+        String folded = fold(text);
+        for (String token : tokens(folded))
+            addPosting(tokenPostings, token, id);
+        for (String gram : grams(folded))
+            addPosting(gramPostings, gram, id);
+    }
+
+    /**
+     * Removes a Todo's text from the index
+     * @param id The id of the Todo
+     * @param text The text the Todo was indexed with
+     */
+    void remove(int id, String text) {
+        String folded = fold(text);
+        for (String token : tokens(folded))
+            removePosting(tokenPostings, token, id);
+        for (String gram : grams(folded))
+            removePosting(gramPostings, gram, id);
+    }
+
+    /**
+     * Adds many Todos to the index at once. Ids are grouped by token and n-gram first, so
+     * each posting list is touched once per batch rather than once per Todo.
+     * @param todos The Todos to be indexed
+     * @param property Getter of the indexed property
+     */
+    void addAll(Collection<ToDoEntity> todos, Function<ToDoEntity, String> property) {
+        Map<String, List<Integer>> idsByToken = new HashMap<>();
+        Map<String, List<Integer>> idsByGram = new HashMap<>();
+        groupIds(todos, property, idsByToken, idsByGram);
+
+        idsByToken.forEach((token, ids) -> addPostings(tokenPostings, token, ids));
+        idsByGram.forEach((gram, ids) -> addPostings(gramPostings, gram, ids));
+    }
+
+    /**
+     * Removes many Todos from the index at once, touching each posting list once per batch
+     * @param todos The Todos to be removed, holding the text they were indexed with
+     * @param property Getter of the indexed property
+     */
+    void removeAll(Collection<ToDoEntity> todos, Function<ToDoEntity, String> property) {
+        Map<String, List<Integer>> idsByToken = new HashMap<>();
+        Map<String, List<Integer>> idsByGram = new HashMap<>();
+        groupIds(todos, property, idsByToken, idsByGram);
+
+        idsByToken.forEach((token, ids) -> removePostings(tokenPostings, token, ids));
+        idsByGram.forEach((gram, ids) -> removePostings(gramPostings, gram, ids));
+    }
+
+    /**
+     * Moves a Todo from its old text to its new text. Only the tokens and n-grams that differ
+     * are touched, and new ones are added before old ones are dropped so the Todo stays
+     * findable by every part the two texts share.
+     * @param id The id of the Todo
+     * @param oldText The text the Todo was indexed with
+     * @param newText The text to be indexed
+     */
+    void replace(int id, String oldText, String newText) {
+        String oldFolded = fold(oldText);
+        String newFolded = fold(newText);
+        if (oldFolded.equals(newFolded))
+            return;
+
+        replacePostings(tokenPostings, tokens(oldFolded), tokens(newFolded), id);
+        replacePostings(gramPostings, grams(oldFolded), grams(newFolded), id);
+    }
+
+    /**
+     * Finds the ids of Todos whose text could be equal (ignoring case) to the query
+     * @param query Query text to be searched
+     * @param afterId Only ids greater than this are returned
+     * @return a lazy Stream of the candidate ids in ascending order, or null if the query cannot be answered from the index
+     */
+    Stream<Integer> findEqualCandidates(String query, int afterId) {
+        Set<String> tokens = tokens(fold(query));
+        if (tokens.isEmpty())
+            return null;
+        return intersect(tokenPostings, tokens, afterId);
+    }
+
+    /**
+     * Finds the ids of Todos whose text could contain (ignoring case) the query
+     * @param query Query text to be searched
+     * @param afterId Only ids greater than this are returned
+     * @return a lazy Stream of the candidate ids in ascending order, or null if the query is shorter than {@link #GRAM_SIZE}
+     */
+    Stream<Integer> findContainingCandidates(String query, int afterId) {
+        Set<String> grams = grams(fold(query));
+        if (grams.isEmpty())
+            return null;
+        return intersect(gramPostings, grams, afterId);
+    }
+
+    /**
+     * Gets the ids of the Todos whose text contains a word
+     * @param token A word as returned by {@link #tokens(String)}
+     * @return a read-only set of the ids in ascending order (empty if no Todo has the word)
+     */
+    NavigableSet<Integer> findTokenIds(String token) {
+        PostingList list = tokenPostings.get(token);
+        return list == null ? Collections.emptyNavigableSet() : Collections.unmodifiableNavigableSet(list.ids);
+    }
+
+    /**
+     * Counts the Todos whose text contains a word, in constant time
+     * @param token A word as returned by {@link #tokens(String)}
+     * @return the number of Todos with the word
+     */
+    int countTokenIds(String token) {
+        PostingList list = tokenPostings.get(token);
+        return list == null ? 0 : list.size;
+    }
+
+    /**
+     * Case-folds text the same way for indexing and querying. A missing text is indexed
+     * as empty, so a Todo without a Description is still stored and indexed whole.
+     * @param text The text to be folded (may be null)
+     * @return the folded text
+     */
+    static String fold(String text) {
+        return text == null ? "" : text.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Splits folded text into the words it is indexed by
+     * @param folded Text returned by {@link #fold(String)}
+     * @return the distinct words of the text
+     */
+    static Set<String> tokens(String folded) {
+        Set<String> tokens = new HashSet<>();
+        for (String token : folded.split("[^\\p{L}\\p{N}]+"))
+            if (!token.isEmpty())
+                tokens.add(token);
+        return tokens;
+    }
+
+    private static Set<String> grams(String folded) {
+        Set<String> grams = new HashSet<>();
+        for (int i = 0; i + GRAM_SIZE <= folded.length(); i++)
+            grams.add(folded.substring(i, i + GRAM_SIZE));
+        return grams;
+    }
+
+    /**
+     * Intersects posting lists lazily: the shortest list is walked from @param(afterId) and
+     * every id is probed in the others, so a consumer that stops early stops the work too.
+     */
+    private static Stream<Integer> intersect(Map<String, PostingList> postings, Set<String> keys, int afterId) {
+        List<PostingList> lists = new ArrayList<>(keys.size());
+        for (String key : keys) {
+            PostingList list = postings.get(key);
+            if (list == null)
+                return Stream.empty();
+            lists.add(list);
+        }
+        lists.sort(Comparator.comparingInt(list -> list.size));
+
+        List<PostingList> others = lists.subList(1, lists.size());
+        return lists.get(0).ids.tailSet(afterId, false).stream()
+                .filter(id -> others.stream().allMatch(list -> list.ids.contains(id)));
+    }
+
+    private static void replacePostings(ConcurrentHashMap<String, PostingList> postings, Set<String> oldKeys, Set<String> newKeys, int id) {
+        for (String key : newKeys)
+            if (!oldKeys.contains(key))
+                addPosting(postings, key, id);
+        for (String key : oldKeys)
+            if (!newKeys.contains(key))
+                removePosting(postings, key, id);
+    }
+
+    private static void groupIds(Collection<ToDoEntity> todos, Function<ToDoEntity, String> property,
+                                 Map<String, List<Integer>> idsByToken, Map<String, List<Integer>> idsByGram) {
+        for (ToDoEntity todo : todos) {
+            String folded = fold(property.apply(todo));
+            for (String token : tokens(folded))
+                idsByToken.computeIfAbsent(token, k -> new ArrayList<>()).add(todo.getId());
+            for (String gram : grams(folded))
+                idsByGram.computeIfAbsent(gram, k -> new ArrayList<>()).add(todo.getId());
+        }
+    }
+
+    private static void addPosting(ConcurrentHashMap<String, PostingList> postings, String key, int id) {
+        addPostings(postings, key, List.of(id));
+    }
+
+    private static void addPostings(ConcurrentHashMap<String, PostingList> postings, String key, List<Integer> ids) {
+        postings.compute(key, (k, list) -> {
+            if (list == null)
+                list = new PostingList();
+            for (Integer id : ids)
+                if (list.ids.add(id))
+                    list.size++;
+            return list;
+        });
+    }
+
+    private static void removePosting(ConcurrentHashMap<String, PostingList> postings, String key, int id) {
+        removePostings(postings, key, List.of(id));
+    }
+
+    private static void removePostings(ConcurrentHashMap<String, PostingList> postings, String key, List<Integer> ids) {
+        postings.computeIfPresent(key, (k, list) -> {
+            for (Integer id : ids)
+                if (list.ids.remove(id))
+                    list.size--;
+            return list.size == 0 ? null : list;
+        });
+    }
+
+    /**
+     * Sorted ids of the Todos sharing a token or n-gram. The size is kept alongside because
+     * counting a skip list is linear; it is only written while the map holds the key's lock.
+     */
+    private static final class PostingList {
+        final NavigableSet<Integer> ids = new ConcurrentSkipListSet<>();
+        volatile int size;
+    }
+}
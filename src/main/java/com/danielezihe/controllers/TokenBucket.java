@@ -0,0 +1,43 @@
+package com.danielezihe.controllers;
+
+/**
+ * Token bucket rate limiter. Holds up to a fixed number of tokens that refill continuously
+ * at a fixed rate; each admitted operation takes one token and operations finding the
+ * bucket empty are refused at once, without waiting.
+ */
+final class TokenBucket {
+    private final double capacity;
+    private final double tokensPerNano;
+    private double tokens;
+    private long lastRefillNanos;
+
+    /**
+     * @param capacity The most tokens the bucket holds, i.e. the largest burst admitted
+     * @param tokensPerSecond The rate tokens are added at
+     */
+    TokenBucket(double capacity, double tokensPerSecond) {
+        if (capacity < 1 || tokensPerSecond <= 0)
+            throw new IllegalArgumentException("Bucket needs a capacity of at least 1 and a positive rate");
+
+        this.capacity = capacity;
+        this.tokensPerNano = tokensPerSecond / 1_000_000_000.0;
+        this.tokens = capacity;
+        this.lastRefillNanos = System.nanoTime();
+    }
+
+    /**
+     * Takes a token if one is available
+     * @return true if the operation is admitted, false if the bucket is empty
+     */
+    synchronized boolean tryAcquire() {
+        long now = System.nanoTime();
+        tokens = Math.min(capacity, tokens + (now - lastRefillNanos) * tokensPerNano);
+        lastRefillNanos = now;
+
+        if (tokens < 1)
+            return false;
+
+        tokens--;
+        return true;
+    }
+}
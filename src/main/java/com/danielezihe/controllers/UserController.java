@@ -3,97 +3,462 @@ package com.danielezihe.controllers;
 import at.favre.lib.crypto.bcrypt.BCrypt;
 import com.danielezihe.entities.ToDoEntity;
 import com.danielezihe.entities.UserEntity;
+import com.danielezihe.entities.util.CreatedAtQueryTypes;
+import com.danielezihe.entities.util.LogDurabilityTypes;
+import com.danielezihe.entities.util.TodoEntityProperties;
+import com.danielezihe.entities.util.TodoStoreTypes;
 import com.danielezihe.entities.util.UserEntityChangeableProperties;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.collect.MapMaker;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
 import org.apache.commons.collections4.OrderedMap;
-import org.apache.commons.collections4.bidimap.TreeBidiMap;
-import org.apache.commons.collections4.map.LinkedMap;
 
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Base64;
 import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
 import java.util.stream.Stream;
 
 /**
  * @author EZIHE S. DANIEL
  * CreatedAt: 09/10/2021
+ * <p>
+ * Users are kept in a {@link ConcurrentHashMap} keyed by email, so logins read without
+ * locking. An email is reserved atomically, with computeIfAbsent on sign-up and putIfAbsent
+ * on an email change, which makes email uniqueness hold under any number of concurrent
+ * sign-ups and email changes. A second index keeps the users ordered by id for listings.
+ * <p>
+ * A user's {@link ToDoController} is only loaded when first used. Controllers left idle
+ * for too long, or the least recently used ones once too many are in memory, are written
+ * to a local spill file and dropped, and read back from it on their next use.
+ * <p>
+ * Every change to a user or a Todo is recorded in a {@link WriteAheadLog} in the data
+ * directory before the change returns. A {@link SnapshotFile} of every user and Todo is
+ * taken periodically, after which the log segments it covers are deleted. Startup loads
+ * the newest snapshot and replays only the log records appended after it; the Todos of a
+ * user are decoded from the snapshot when first used.
+ * <p>
+ * Every BCrypt hash or verify must first be admitted by a token bucket for the email
+ * involved and by a global one, so attempts over the limit are refused before any hashing
+ * and the CPU spent on BCrypt per second is capped.
  */
 public class UserController {
-    private final OrderedMap<String, UserEntity> users;
-    private static UserController userController;
+    private static final int PASSWORD_THREADS = Runtime.getRuntime().availableProcessors();
+    private static final int PASSWORD_QUEUE_LIMIT = PASSWORD_THREADS * 32;
 
-    private UserController() {
-        users = new LinkedMap<>();
+    /**
+     * Runs BCrypt work for the async methods, away from the callers' threads. The pool is
+     * bounded in threads and queue length and rejects work at once when both are full.
+     */
+    private static final ThreadPoolExecutor PASSWORD_POOL = new ThreadPoolExecutor(
+            PASSWORD_THREADS, PASSWORD_THREADS, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(PASSWORD_QUEUE_LIMIT),
+            new ThreadFactoryBuilder().setNameFormat("password-worker-%d").setDaemon(true).build(),
+            new ThreadPoolExecutor.AbortPolicy());
+
+    /**
+     * System property holding the time, in milliseconds, one password hash should take
+     */
+    public static final String PASSWORD_HASH_BUDGET_PROPERTY = "todoapp.bcrypt.budgetMillis";
+    private static final long DEFAULT_PASSWORD_HASH_BUDGET_MILLIS = 100;
+    private static final int MIN_PASSWORD_COST = 10;
+    private static final int MAX_PASSWORD_COST = 16;
+    private static final int CALIBRATION_RUNS = 5;
+
+    private static final int EMAIL_ATTEMPTS_BURST = 5;
+    private static final double EMAIL_ATTEMPTS_PER_SECOND = 5 / 60.0;
+    private static final long MAX_EMAIL_BUCKETS = 100_000;
+    private static final double GLOBAL_PASSWORD_CPU_SHARE = 0.5;
+
+    /**
+     * System property holding how long, in minutes, a user's Todos may stay idle in memory
+     */
+    public static final String TODO_IDLE_MINUTES_PROPERTY = "todoapp.todos.idleMinutes";
+    /**
+     * System property holding the most users whose Todos are kept in memory at once
+     */
+    public static final String MAX_RESIDENT_TODO_STORES_PROPERTY = "todoapp.todos.maxResidentUsers";
+    /**
+     * System property holding the directory evicted Todos are written to. Its content is
+     * deleted at startup. A fresh temporary directory is used when unset.
+     */
+    public static final String TODO_SPILL_DIRECTORY_PROPERTY = "todoapp.todos.spillDir";
+    /**
+     * System property holding the {@link TodoStoreTypes} every user's Todos are kept in
+     */
+    public static final String TODO_STORE_TYPE_PROPERTY = "todoapp.todos.storeType";
+    /**
+     * System property holding the directory the write-ahead log is kept in
+     */
+    public static final String DATA_DIRECTORY_PROPERTY = "todoapp.data.dir";
+    /**
+     * System property holding the {@link LogDurabilityTypes} of the write-ahead log
+     */
+    public static final String LOG_DURABILITY_PROPERTY = "todoapp.wal.durability";
+    /**
+     * System property holding the sync period, in milliseconds, of PERIODIC durability
+     */
+    public static final String LOG_SYNC_PERIOD_PROPERTY = "todoapp.wal.periodMillis";
+    /**
+     * System property holding the period, in minutes, snapshots are taken at
+     */
+    public static final String SNAPSHOT_INTERVAL_PROPERTY = "todoapp.snapshot.intervalMinutes";
+    private static final String DEFAULT_DATA_DIRECTORY = "todoapp-data";
+    private static final String LOG_DIRECTORY_NAME = "wal";
+    private static final long DEFAULT_LOG_SYNC_PERIOD_MILLIS = 100;
+    private static final long DEFAULT_SNAPSHOT_INTERVAL_MINUTES = 10;
+    private static final long DEFAULT_TODO_IDLE_MINUTES = 30;
+    private static final long DEFAULT_MAX_RESIDENT_TODO_STORES = 10_000;
+    private static final long UNSPILLED_FLUSH_SECONDS = 5;
+    private static final long SNAPSHOT_CHANGE_WAIT_SECONDS = 10;
+
+    private static final int SESSION_TOKEN_BYTES = 32;
+    private static final long SESSION_IDLE_MINUTES = 30;
+    private static final long MAX_SESSIONS = 100_000;
+
+    private final ConcurrentMap<String, UserEntity> users;
+    private final NavigableMap<Integer, UserEntity> usersById = new ConcurrentSkipListMap<>();
+    private final AtomicInteger lastUserId = new AtomicInteger();
+    private final int passwordCost;
+    private final SecureRandom tokenRandom = new SecureRandom();
+    private final TokenBucket globalPasswordBucket;
+
+    /**
+     * Password attempt buckets keyed by email. A bucket left idle long enough to have
+     * refilled completely is evicted, which loses nothing as a new bucket starts full.
+     */
+    private final LoadingCache<String, TokenBucket> emailPasswordBuckets = CacheBuilder.newBuilder()
+            .expireAfterAccess((long) Math.ceil(EMAIL_ATTEMPTS_BURST / EMAIL_ATTEMPTS_PER_SECOND), TimeUnit.SECONDS)
+            .maximumSize(MAX_EMAIL_BUCKETS)
+            .build(CacheLoader.from(() -> new TokenBucket(EMAIL_ATTEMPTS_BURST, EMAIL_ATTEMPTS_PER_SECOND)));
+
+    /**
+     * Logged in users keyed by opaque session token. Sessions expire after being idle and
+     * the least recently used ones are evicted once the cache is full.
+     */
+    private final Cache<String, UserEntity> sessions = CacheBuilder.newBuilder()
+            .expireAfterAccess(SESSION_IDLE_MINUTES, TimeUnit.MINUTES)
+            .maximumSize(MAX_SESSIONS)
+            .removalListener(this::sessionEnded)
+            .build();
+
+    /**
+     * The session tokens of each user keyed by user id, so a user's sessions can be ended
+     * without scanning every session. A token is added before its session is cached and
+     * removed once the session is removed from the cache, for whatever reason.
+     */
+    private final ConcurrentMap<Integer, Set<String>> sessionTokensByUser = new ConcurrentHashMap<>();
+    private final TodoSpillFiles todoSpillFiles;
+    private final TodoStoreTypes todoStoreType;
+
+    /**
+     * Every user's {@link ToDoController} still reachable from anywhere, resident or not.
+     * A controller is found here until it has been garbage collected, so a user whose
+     * controller was evicted while still in use gets the very same instance back.
+     */
+    private final ConcurrentMap<Integer, ToDoController> liveTodoControllers = new MapMaker().weakValues().makeMap();
+
+    /**
+     * Controllers evicted since they were last loaded. A caller may still hold one and change
+     * it, so its changes are tracked until it is loaded again or collected.
+     */
+    private final Set<ToDoController> spilledTodoControllers = Collections.newSetFromMap(new MapMaker().weakKeys().makeMap());
+
+    /**
+     * Evicted controllers changed since their spill file was written, or whose spill file
+     * could not be written. Holding them here keeps them from being collected, and so from
+     * being reloaded from an outdated file, until the file is written again.
+     */
+    private final ConcurrentMap<Integer, ToDoController> unspilledTodoControllers = new ConcurrentHashMap<>();
+
+    /**
+     * Number of changes made to each user's controller while it was evicted, and how many of
+     * those the user's spill file holds. A spill file is only current, and only copied into
+     * a snapshot, while it holds every counted change.
+     */
+    private final ConcurrentMap<Integer, Long> todoChangeCounts = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Integer, Long> spilledTodoChangeCounts = new ConcurrentHashMap<>();
+
+    /**
+     * Keeps the controllers of recently active users in memory, keyed by user id
+     */
+    private final LoadingCache<Integer, ToDoController> residentTodoControllers;
+    private final Path dataDirectory;
+    private final Object snapshotLock = new Object();
+    private final ScheduledExecutorService snapshotScheduler = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder().setNameFormat("snapshot-writer").setDaemon(true).build());
+
+    /**
+     * Writes the spill files of evicted controllers, off the threads whose cache access
+     * caused the eviction
+     */
+    private final ExecutorService todoSpillWriter = Executors.newSingleThreadExecutor(
+            new ThreadFactoryBuilder().setNameFormat("todo-spill-writer").setDaemon(true).build());
+    private volatile SnapshotFile snapshot;
+    private final WriteAheadLog writeAheadLog;
+    private static volatile UserController userController;
+
+    /**
+     * Opens the users and Todos kept in the data directory. Use {@link #getInstance()}; this
+     * is only package-private so tests can open a data directory again after closing it.
+     */
+    UserController() {
+        users = new ConcurrentHashMap<>();
+
+        todoSpillFiles = new TodoSpillFiles(todoSpillDirectory());
+        todoStoreType = TodoStoreTypes.valueOf(System.getProperty(TODO_STORE_TYPE_PROPERTY, TodoStoreTypes.OBJECTS.name()));
+        residentTodoControllers = CacheBuilder.newBuilder()
+                .expireAfterAccess(Long.getLong(TODO_IDLE_MINUTES_PROPERTY, DEFAULT_TODO_IDLE_MINUTES), TimeUnit.MINUTES)
+                .maximumSize(Long.getLong(MAX_RESIDENT_TODO_STORES_PROPERTY, DEFAULT_MAX_RESIDENT_TODO_STORES))
+                .removalListener(this::spillTodoController)
+                .build(CacheLoader.from(this::loadTodoController));
+
+        long hashBudgetMillis = Math.max(Long.getLong(PASSWORD_HASH_BUDGET_PROPERTY, DEFAULT_PASSWORD_HASH_BUDGET_MILLIS), 1);
+        passwordCost = calibratePasswordCost(hashBudgetMillis);
+
+        double hashesPerSecond = Math.max(PASSWORD_THREADS * GLOBAL_PASSWORD_CPU_SHARE * 1000 / hashBudgetMillis, 1);
+        globalPasswordBucket = new TokenBucket(hashesPerSecond, hashesPerSecond);
+
+        dataDirectory = Path.of(System.getProperty(DATA_DIRECTORY_PROPERTY, DEFAULT_DATA_DIRECTORY));
+        snapshot = loadSnapshot();
+        writeAheadLog = openWriteAheadLog();
+        Runtime.getRuntime().addShutdownHook(new Thread(this::closeWriteAheadLog, "write-ahead-log-shutdown"));
+
+        long snapshotMinutes = Math.max(Long.getLong(SNAPSHOT_INTERVAL_PROPERTY, DEFAULT_SNAPSHOT_INTERVAL_MINUTES), 1);
+        snapshotScheduler.scheduleWithFixedDelay(this::takeScheduledSnapshot, snapshotMinutes, snapshotMinutes, TimeUnit.MINUTES);
+        snapshotScheduler.scheduleWithFixedDelay(this::flushUnspilledTodoControllers, UNSPILLED_FLUSH_SECONDS, UNSPILLED_FLUSH_SECONDS, TimeUnit.SECONDS);
     }
 
     /**
-     * Adds a user to the users OrderedMap.
+     * Adds a user to the users store. The email is reserved atomically, so of many
+     * concurrent sign-ups with the same email exactly one succeeds.
      * @param name Username to be saved
      * @param email User email to be saved
      * @param password User password to be saved
      * @return the {@link UserEntity} that was saved
-     * @throws UnsupportedOperationException if a User tries to create an account with an Email that already exists
+     * @throws UnsupportedOperationException if a User tries to create an account with an Email that already exists,
+     * or if too many password attempts have been made
      */
     public UserEntity save(String name, String email, String password) {
+        if(users.containsKey(email))
+            throw new UnsupportedOperationException("User with email: " + email + " already exists");
+        if(!admitPasswordWork(email))
+            throw new UnsupportedOperationException("Too many attempts for email: " + email + ". Please try again later");
+
         String hashedPassword = hashPassword(password);
-        int id = users.size() + 1;
+        int id = lastUserId.incrementAndGet();
 
-        ToDoController toDoController = new ToDoController(new TreeBidiMap<>());
-        UserEntity newUser = new UserEntity(id, name, email, hashedPassword, toDoController);
+        UserEntity newUser = newUserEntity(id, name, email, hashedPassword);
 
-        if(users.get(email) == null)
-            users.put(email, newUser);
-        else
+        // The user is logged before the email maps to it, so no change to the user can be
+        // logged ahead of it, and indexed by id first, so a snapshot covering it includes it
+        AtomicReference<CompletableFuture<Void>> logged = new AtomicReference<>();
+        UserEntity saved = users.computeIfAbsent(email, key -> {
+            usersById.put(id, newUser);
+            logged.set(logUser(newUser));
+            return newUser;
+        });
+        if(saved != newUser)
             throw new UnsupportedOperationException("User with email: " + email + " already exists");
 
+        WriteAheadLog.awaitDurable(logged.get());
         return newUser;
     }
 
+    /**
+     * Runs {@link #save(String, String, String)} on the password worker pool
+     * @param name Username to be saved
+     * @param email User email to be saved
+     * @param password User password to be saved
+     * @return a {@link CompletableFuture} of the saved {@link UserEntity}; it fails with
+     * {@link RejectedExecutionException} if the password workers are saturated
+     */
+    public CompletableFuture<UserEntity> saveAsync(String name, String email, String password) {
+        return runPasswordWork(() -> save(name, email, password));
+    }
+
     /**
      * Logs a user in by verifying the users Email and Password against the record
-     * stored in the OrderedMap
+     * stored in the users store. The lookup takes no lock. A password hashed with a
+     * BCrypt cost below the calibrated one is rehashed once it has been verified; hashes
+     * are never moved to a lower cost.
      * @param email email of user to be logged in
      * @param password password of user to be logged in
      * @param <T>
      * @return {@link UserEntity} instance of the User if login is successful
      * "INVALID_USER" if user email is not found.
      * "INCORRECT_DETAILS" if password is wrong.
+     * "TOO MANY ATTEMPTS" if the attempt was refused before the password was checked.
      */
     public <T> T login(String email, String password) {
+        LoginAttempt attempt = attemptLogin(email, password);
+        return (T) (attempt.user() != null ? attempt.user() : attempt.failure().response);
+    }
+
+    /**
+     * Why a login was refused, with the response {@link #login(String, String)} gives for it
+     */
+    private enum LoginFailure {
+        INVALID_USER("INVALID USER"),
+        TOO_MANY_ATTEMPTS("TOO MANY ATTEMPTS"),
+        INCORRECT_DETAILS("INCORRECT DETAILS");
+
+        private final String response;
+
+        LoginFailure(String response) {
+            this.response = response;
+        }
+    }
+
+    /**
+     * Outcome of a login: the logged in user, or why the login was refused
+     */
+    private record LoginAttempt(UserEntity user, LoginFailure failure) {
+    }
+
+    /**
+     * Verifies a user's Email and Password, as described by {@link #login(String, String)}
+     * @param email email of user to be logged in
+     * @param password password of user to be logged in
+     * @return the {@link LoginAttempt} holding the user, or why the login was refused
+     */
+    private LoginAttempt attemptLogin(String email, String password) {
         UserEntity user = users.get(email);
 
         if (user == null)
-            return (T) "INVALID USER";
+            return new LoginAttempt(null, LoginFailure.INVALID_USER);
 
-        if (!verifyPassword(password, user.getPassword())) {
-            return (T) "INCORRECT DETAILS";
-        } else {
-            return (T) user;
-        }
+        if (!admitPasswordWork(email))
+            return new LoginAttempt(null, LoginFailure.TOO_MANY_ATTEMPTS);
+
+        String hashedPassword = user.getPassword();
+        BCrypt.Result result = verifyPassword(password, hashedPassword);
+
+        if (!result.verified)
+            return new LoginAttempt(null, LoginFailure.INCORRECT_DETAILS);
+
+        if (result.details.cost < passwordCost && globalPasswordBucket.tryAcquire())
+            rehashPassword(user, hashedPassword, password);
+
+        return new LoginAttempt(user, null);
+    }
+
+    /**
+     * Logs a user in and opens a session for them, so later operations can authenticate
+     * with the returned token instead of the password
+     * @param email email of user to be logged in
+     * @param password password of user to be logged in
+     * @return an opaque session token
+     * @throws IllegalAccessException if the email is not found or the password is wrong
+     * @throws UnsupportedOperationException if too many password attempts have been made
+     */
+    public String startSession(String email, String password) throws IllegalAccessException {
+        LoginAttempt attempt = attemptLogin(email, password);
+
+        if(attempt.failure() == LoginFailure.TOO_MANY_ATTEMPTS)
+            throw new UnsupportedOperationException("Too many attempts for email: " + email + ". Please try again later");
+
+        UserEntity user = attempt.user();
+        if(user == null)
+            throw new IllegalAccessException("Email or Password is incorrect!");
+
+        byte[] tokenBytes = new byte[SESSION_TOKEN_BYTES];
+        tokenRandom.nextBytes(tokenBytes);
+        String token = Base64.getUrlEncoder().withoutPadding().encodeToString(tokenBytes);
+
+        sessionTokensByUser.compute(user.getId(), (userId, tokens) -> {
+            if (tokens == null)
+                tokens = ConcurrentHashMap.newKeySet();
+            tokens.add(token);
+            return tokens;
+        });
+        sessions.put(token, user);
+        return token;
+    }
+
+    /**
+     * Drops an ended session from its user's session tokens
+     * @param removal The removed session
+     */
+    private void sessionEnded(RemovalNotification<String, UserEntity> removal) {
+        sessionTokensByUser.computeIfPresent(removal.getValue().getId(), (userId, tokens) -> {
+            tokens.remove(removal.getKey());
+            return tokens.isEmpty() ? null : tokens;
+        });
+    }
+
+    /**
+     * Gets the user owning a session, without any password work
+     * @param sessionToken Token returned by {@link #startSession(String, String)}
+     * @return the {@link UserEntity} user of the session, or null if the session is unknown or expired
+     */
+    public UserEntity getSessionUser(String sessionToken) {
+        return sessionToken == null ? null : sessions.getIfPresent(sessionToken);
+    }
+
+    /**
+     * Ends a session
+     * @param sessionToken Token returned by {@link #startSession(String, String)}
+     */
+    public void endSession(String sessionToken) {
+        if(sessionToken != null)
+            sessions.invalidate(sessionToken);
+    }
+
+    /**
+     * Runs {@link #login(String, String)} on the password worker pool
+     * @param email email of user to be logged in
+     * @param password password of user to be logged in
+     * @param <T>
+     * @return a {@link CompletableFuture} of the {@link #login(String, String)} result; it fails with
+     * {@link RejectedExecutionException} if the password workers are saturated
+     */
+    public <T> CompletableFuture<T> loginAsync(String email, String password) {
+        return runPasswordWork(() -> login(email, password));
     }
 
     /**
-     * Updates a user's data
+     * Updates a user's data. The user stays in the users store throughout. An email change
+     * first reserves the new email with putIfAbsent and only then releases the old one, so
+     * the user can always be found and two users can never end up with the same email.
      * @param userEmail Email of the user to be updated
      * @param data New data to be saved
      * @param property Property of the user to be updated
      * @return {@link UserEntity} instance with the updated User details
-     * @throws UnsupportedOperationException if a User tries to update Email with an already existing Email
+     * @throws UnsupportedOperationException if the User does not exist, or tries to update Email with an already existing Email
      * @throws IllegalStateException if a User inputs an unexpected value for @Param(property)
      */
     public UserEntity updateUser(String userEmail, String data, UserEntityChangeableProperties property) {
-        UserEntity user = deleteUser(userEmail);
-
-        switch (property) {
-            case NAME -> user.setName(data);
-            case EMAIL -> {
-                if(users.get(data) == null)
-                    user.setEmail(data);
-                else
-                    throw new UnsupportedOperationException("User with email: " + data + " already exists");
-            }
+        UserEntity user = getExistingUser(userEmail);
+
+        CompletableFuture<Void> logged = switch (property) {
+            case NAME -> changeName(user, data);
+            case EMAIL -> changeEmail(user, userEmail, data);
             default -> throw new IllegalStateException("Unexpected value: " + property);
-        }
+        };
 
-        users.put(user.getEmail(), user);
+        WriteAheadLog.awaitDurable(logged);
         return user;
     }
 
@@ -104,26 +469,500 @@ public class UserController {
      * @param newPassword  New password to be saved
      * @return {@link UserEntity} instance of the updated User
      * @throws IllegalAccessException if Old password is incorrect
+     * @throws UnsupportedOperationException if too many password attempts have been made
      */
     public UserEntity updateUser(String userEmail, String oldPassword, String newPassword) throws IllegalAccessException {
-        var response = login(userEmail, oldPassword);
+        return updateUser(null, userEmail, oldPassword, newPassword);
+    }
+
+    /**
+     * Updates a user's password, authenticating with a session first. The old password is
+     * only checked with BCrypt when the session is missing, expired or not the user's own.
+     * Every other session of the user is ended.
+     * @param sessionToken Token returned by {@link #startSession(String, String)} (may be null)
+     * @param userEmail Email of the user to be updated
+     * @param oldPassword User's old password
+     * @param newPassword  New password to be saved
+     * @return {@link UserEntity} instance of the updated User
+     * @throws IllegalAccessException if the session is not valid and Old password is incorrect
+     * @throws UnsupportedOperationException if too many password attempts have been made
+     */
+    public UserEntity updateUser(String sessionToken, String userEmail, String oldPassword, String newPassword) throws IllegalAccessException {
+        UserEntity user = getSessionUser(sessionToken);
+
+        if(user == null || !user.getEmail().equals(userEmail)) {
+            LoginAttempt attempt = attemptLogin(userEmail, oldPassword);
+            if(attempt.failure() == LoginFailure.TOO_MANY_ATTEMPTS)
+                throw new UnsupportedOperationException("Too many attempts for email: " + userEmail + ". Please try again later");
+            if(attempt.user() == null)
+                throw new IllegalAccessException("Old Password is incorrect!");
+            user = attempt.user();
+        }
+
+        if(!admitPasswordWork(userEmail))
+            throw new UnsupportedOperationException("Too many attempts for email: " + userEmail + ". Please try again later");
+
+        String hashedNewPassword = hashPassword(newPassword);
+        CompletableFuture<Void> logged;
+        synchronized (user) {
+            user.setPassword(hashedNewPassword);
+            logged = logUser(user);
+        }
+        WriteAheadLog.awaitDurable(logged);
+
+        Set<String> otherTokens = new HashSet<>(sessionTokensByUser.getOrDefault(user.getId(), Set.of()));
+        otherTokens.remove(sessionToken);
+        sessions.invalidateAll(otherTokens);
+        return user;
+    }
+
+    /**
+     * Runs {@link #updateUser(String, String, String)} on the password worker pool
+     * @param userEmail Email of the user to be updated
+     * @param oldPassword User's old password
+     * @param newPassword  New password to be saved
+     * @return a {@link CompletableFuture} of the updated {@link UserEntity}; it fails with
+     * {@link IllegalAccessException} if Old password is incorrect, or with
+     * {@link RejectedExecutionException} if the password workers are saturated
+     */
+    public CompletableFuture<UserEntity> updateUserAsync(String userEmail, String oldPassword, String newPassword) {
+        return runPasswordWork(() -> {
+            try {
+                return updateUser(userEmail, oldPassword, newPassword);
+            } catch (IllegalAccessException e) {
+                throw new CompletionException(e);
+            }
+        });
+    }
+
+    /**
+     * Hands password work to the password worker pool
+     * @param work The work to be run
+     * @param <T>
+     * @return a {@link CompletableFuture} of the result of @param(work), already failed
+     * with {@link RejectedExecutionException} if the pool cannot take more work
+     */
+    private static <T> CompletableFuture<T> runPasswordWork(Supplier<T> work) {
+        try {
+            return CompletableFuture.supplyAsync(work, PASSWORD_POOL);
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Renames a user
+     * @param user The user to be updated
+     * @param name The name to be saved
+     * @return a future completing once the change is durable
+     */
+    private CompletableFuture<Void> changeName(UserEntity user, String name) {
+        synchronized (user) {
+            user.setName(name);
+            return logUser(user);
+        }
+    }
+
+    /**
+     * Moves a user to a new email. Changes of the same user are serialized on the user,
+     * changes of different users only meet on the emails they reserve.
+     * @param user The user to be updated
+     * @param oldEmail The email the user is currently stored under
+     * @param newEmail The email to be saved
+     * @return a future completing once the change is durable (null if nothing changed)
+     * @throws UnsupportedOperationException if @param(newEmail) already belongs to a User
+     */
+    private CompletableFuture<Void> changeEmail(UserEntity user, String oldEmail, String newEmail) {
+        synchronized (user) {
+            if(users.get(oldEmail) != user)
+                throw new UnsupportedOperationException("User with email: " + oldEmail + " not found");
+            if(oldEmail.equals(newEmail))
+                return null;
+            if(users.putIfAbsent(newEmail, user) != null)
+                throw new UnsupportedOperationException("User with email: " + newEmail + " already exists");
+
+            user.setEmail(newEmail);
+            users.remove(oldEmail, user);
+            return logUser(user);
+        }
+    }
+
+    /**
+     * Gets a stored user
+     * @param userEmail email of the User
+     * @return the {@link UserEntity} user
+     * @throws UnsupportedOperationException if no User has @param(userEmail)
+     */
+    private UserEntity getExistingUser(String userEmail) {
+        UserEntity user = users.get(userEmail);
 
-        if(response instanceof UserEntity) {
-            String hashedNewPassword = hashPassword(newPassword);
-            ((UserEntity) response).setPassword(hashedNewPassword);
+        if(user == null)
+            throw new UnsupportedOperationException("User with email: " + userEmail + " not found");
 
-            return (UserEntity) response;
-        } else
-            throw new IllegalAccessException("Old Password is incorrect!");
+        return user;
     }
 
     /**
-     * Removes a {@link UserEntity} user from the users OrderedMap.
-     * @param userEmail email of User to be removed
-     * @return the recently deleted {@link UserEntity} user
+     * Admits one BCrypt hash or verify for an email. The email's bucket is asked first, so
+     * attempts hammering one email are refused without draining the global bucket.
+     * @param email The email the password work is for
+     * @return true if the work may run, false if it must be refused
      */
-    private UserEntity deleteUser(String userEmail) {
-        return users.remove(userEmail);
+    private boolean admitPasswordWork(String email) {
+        return emailPasswordBuckets.getUnchecked(email).tryAcquire() && globalPasswordBucket.tryAcquire();
+    }
+
+    /**
+     * Gets a user's {@link ToDoController}, loading it if it is not resident
+     * @param userId The id of the user
+     * @return the user's {@link ToDoController}
+     */
+    private ToDoController getTodoController(int userId) {
+        try {
+            return residentTodoControllers.getUnchecked(userId);
+        } catch (UncheckedExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause)
+                throw cause;
+            throw e;
+        }
+    }
+
+    /**
+     * Loads a user's {@link ToDoController} into memory: the instance still in use if there
+     * is one, else the user's spill file, else the user's Todos in the snapshot, else a new
+     * empty controller. The Todos are read before the controller is published, so no lock
+     * is held while reading; the cache runs one load per user at a time, and a controller
+     * missing from the live controllers has a current spill file, so what is read is current.
+     * @param userId The id of the user
+     * @return the user's {@link ToDoController}
+     * @throws UncheckedIOException if the spill file cannot be read
+     */
+    private ToDoController loadTodoController(Integer userId) {
+        ToDoController loaded = liveTodoControllers.get(userId);
+        if (loaded == null) {
+            ToDoController read = readTodoController(userId);
+            read.setChangeLog(todoChangeLog(userId, read));
+            ToDoController published = liveTodoControllers.putIfAbsent(userId, read);
+            loaded = published == null ? read : published;
+        }
+        spilledTodoControllers.remove(loaded);
+        return loaded;
+    }
+
+    /**
+     * Reads a user's Todos from the user's spill file, else the snapshot
+     * @param userId The id of the user
+     * @return a new {@link ToDoController} holding the Todos, empty if the user has none
+     * @throws UncheckedIOException if the spill file cannot be read
+     */
+    private ToDoController readTodoController(int userId) {
+        try {
+            ToDoController toDoController = todoSpillFiles.read(userId, todoStoreType);
+            SnapshotFile currentSnapshot = snapshot;
+            if (toDoController == null && currentSnapshot != null)
+                toDoController = currentSnapshot.readTodos(userId, todoStoreType);
+            return toDoController == null ? new ToDoController(todoStoreType) : toDoController;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read Todos of user " + userId, e);
+        }
+    }
+
+    /**
+     * Searches a user's Todos without making them resident. The instance still in memory is
+     * searched through its indexes if there is one; otherwise the Todos are decoded from the
+     * user's spill file or the snapshot and each one is tested directly, so no throwaway
+     * controller or index is built. The resident controllers and their recency are left untouched.
+     * @param user The user owning the Todos
+     * @param search The indexed search to run against a resident {@link ToDoController}
+     * @param matcher The test a Todo must pass to be returned by @param(search)
+     * @return a lazy Stream of the user's matching Todos ordered by id, or null if the user has no Todos anywhere
+     * @throws UncheckedIOException if the spill file cannot be read
+     */
+    private Stream<ToDoEntity> findTodosOf(UserEntity user, Function<ToDoController, Stream<ToDoEntity>> search,
+                                           Predicate<ToDoEntity> matcher) {
+        int userId = user.getId();
+        ToDoController toDoController = liveTodoControllers.get(userId);
+        if (toDoController != null)
+            return search.apply(toDoController);
+
+        List<ToDoEntity> todos;
+        try {
+            todos = todoSpillFiles.decodeTodos(userId);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read Todos of user " + userId, e);
+        }
+        SnapshotFile currentSnapshot = snapshot;
+        if (todos == null && currentSnapshot != null)
+            todos = currentSnapshot.decodeTodos(userId);
+        return todos == null ? null : todos.stream().filter(matcher);
+    }
+
+    /**
+     * Marks an evicted {@link ToDoController} unspilled and has the spill writer write it to
+     * the user's spill file. Until then the mark keeps it live, so it is found again rather
+     * than read back from an outdated file. From then on, changes made through a caller still
+     * holding it get it written again.
+     * @param removal The removed cache entry
+     */
+    private void spillTodoController(RemovalNotification<Integer, ToDoController> removal) {
+        if (!removal.wasEvicted())
+            return;
+
+        int userId = removal.getKey();
+        ToDoController toDoController = removal.getValue();
+        spilledTodoControllers.add(toDoController);
+        unspilledTodoControllers.put(userId, toDoController);
+        todoSpillWriter.execute(() -> flushTodoController(userId, toDoController));
+    }
+
+    /**
+     * Writes a controller to its user's spill file if it is still marked unspilled. The mark
+     * is cleared before the Todos are read, so a change applied meanwhile marks it again and
+     * is written by the next flush. Writes of the same controller are serialized on it.
+     * @param userId The id of the user owning the Todos
+     * @param toDoController The controller to be written
+     */
+    private void flushTodoController(int userId, ToDoController toDoController) {
+        synchronized (toDoController) {
+            if (!unspilledTodoControllers.remove(userId, toDoController))
+                return;
+
+            long changes = todoChangeCounts.getOrDefault(userId, 0L);
+            try {
+                todoSpillFiles.write(userId, toDoController);
+                spilledTodoChangeCounts.merge(userId, changes, Math::max);
+            } catch (IOException e) {
+                unspilledTodoControllers.put(userId, toDoController);
+            }
+        }
+    }
+
+    /**
+     * Writes every controller changed since it was spilled, on the snapshot scheduler
+     */
+    private void flushUnspilledTodoControllers() {
+        unspilledTodoControllers.forEach(this::flushTodoController);
+    }
+
+    /**
+     * Creates a user whose Todos are loaded on demand
+     */
+    private UserEntity newUserEntity(int id, String name, String email, String hashedPassword) {
+        return new UserEntity(id, name, email, hashedPassword, () -> getTodoController(id));
+    }
+
+    /**
+     * Records the current state of a user. Must be called with the user's lock held, or
+     * before the user can be found by email.
+     * @param user The user to be recorded
+     * @return a future completing once the record is durable
+     */
+    private CompletableFuture<Void> logUser(UserEntity user) {
+        return writeAheadLog.append(List.of(WriteAheadLog.userRecord(user)));
+    }
+
+    /**
+     * Gets the {@link TodoChangeLog} recording a user's Todos in the write-ahead log. Changes
+     * to a controller that has been spilled mark it unspilled.
+     * @param userId The id of the user owning the Todos
+     * @param toDoController The controller the changes are made to
+     */
+    private TodoChangeLog todoChangeLog(int userId, ToDoController toDoController) {
+        return new TodoChangeLog() {
+            @Override
+            public CompletableFuture<Void> todosSaved(List<ToDoEntity> todos) {
+                return writeAheadLog.append(todos.stream().map(todo -> WriteAheadLog.todoRecord(userId, todo)).toList());
+            }
+
+            @Override
+            public CompletableFuture<Void> todosDeleted(List<Integer> todoIds) {
+                return writeAheadLog.append(todoIds.stream().map(todoId -> WriteAheadLog.todoDeletedRecord(userId, todoId)).toList());
+            }
+
+            @Override
+            public void changesApplied() {
+                if (spilledTodoControllers.contains(toDoController)) {
+                    todoChangeCounts.merge(userId, 1L, Long::sum);
+                    unspilledTodoControllers.put(userId, toDoController);
+                }
+            }
+        };
+    }
+
+    /**
+     * Writes a snapshot of every user and their Todos, unless nothing was logged since the
+     * last one, then deletes the older snapshots and the log segments the snapshot covers. Changes made while the snapshot is written may or
+     * may not be in it; they are all in the log segments that are kept, whose records hold
+     * full states and so can be replayed over the snapshot.
+     * @throws UncheckedIOException if the snapshot cannot be written, or if Todos it would
+     * copy may be missing logged changes; the older snapshot and the whole log are then kept
+     */
+    public void takeSnapshot() {
+        flushUnspilledTodoControllers();
+        synchronized (snapshotLock) {
+            SnapshotFile previousSnapshot = snapshot;
+            if (previousSnapshot != null && previousSnapshot.getSequence() == writeAheadLog.lastSequence())
+                return;
+
+            long sequence = WriteAheadLog.awaitDurable(writeAheadLog.rollover());
+            Path file = SnapshotFile.fileFor(dataDirectory, sequence);
+            try {
+                SnapshotFile.write(file, sequence, lastUserId.get(), usersById.values(),
+                        (userId, output) -> writeSnapshotTodos(previousSnapshot, userId, output));
+                snapshot = SnapshotFile.load(file, null);
+
+                SnapshotFile.deleteOlder(dataDirectory, sequence);
+                writeAheadLog.deleteSegmentsBefore(sequence + 1);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot write snapshot " + file, e);
+            }
+        }
+    }
+
+    /**
+     * Takes a snapshot on the snapshot scheduler, which must not die on a failed attempt
+     */
+    private void takeScheduledSnapshot() {
+        try {
+            takeSnapshot();
+        } catch (UncheckedIOException | IllegalStateException e) {
+            // The log is kept whole until a later snapshot succeeds
+        }
+    }
+
+    /**
+     * Writes a user's Todos to a snapshot from wherever they currently are, without loading
+     * them into the resident controllers. The log records the snapshot covers are deleted once
+     * it is taken, so a controller in memory is only written once no change is part way
+     * through being applied, and a spill file is only copied if it holds every change counted
+     * for the user.
+     * @param previousSnapshot The snapshot the Todos of users not loaded since are copied from
+     * @param userId The id of the user owning the Todos
+     * @param output The stream the Todos are written to
+     * @throws IOException if the Todos cannot be read, if the controller kept changing for
+     * SNAPSHOT_CHANGE_WAIT_SECONDS, or if the spill file is missing changes
+     */
+    private void writeSnapshotTodos(SnapshotFile previousSnapshot, int userId, DataOutputStream output) throws IOException {
+        ToDoController toDoController = liveTodoControllers.get(userId);
+        if (toDoController != null) {
+            if (!toDoController.awaitChangesApplied(TimeUnit.SECONDS.toNanos(SNAPSHOT_CHANGE_WAIT_SECONDS)))
+                throw new IOException("Todos of user " + userId + " kept changing; changes logged before the snapshot may not be applied yet");
+            TodoSpillFiles.writeTodos(output, toDoController);
+            return;
+        }
+
+        // The file is read after the counts: a file replaced meanwhile only holds more changes
+        long changes = todoChangeCounts.getOrDefault(userId, 0L);
+        long spilledChanges = spilledTodoChangeCounts.getOrDefault(userId, -1L);
+        byte[] spilled = todoSpillFiles.readEncoded(userId);
+        if (spilled != null) {
+            if (spilledChanges < changes)
+                throw new IOException("Spill file of user " + userId + " is missing changes still only in the write-ahead log");
+            output.write(spilled);
+        } else if (previousSnapshot == null || !previousSnapshot.copyTodos(userId, output))
+            TodoSpillFiles.writeTodos(output, new ToDoController());
+    }
+
+    /**
+     * Loads the newest snapshot, decoding its users in parallel
+     * @return the loaded {@link SnapshotFile}, or null if there is none
+     * @throws UncheckedIOException if the snapshot cannot be read
+     */
+    private SnapshotFile loadSnapshot() {
+        Path file = null;
+        try {
+            file = SnapshotFile.newest(dataDirectory);
+            if (file == null)
+                return null;
+
+            SnapshotFile loaded = SnapshotFile.load(file, this::restoreUser);
+            lastUserId.accumulateAndGet(loaded.getLastUserId(), Math::max);
+            return loaded;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot load snapshot " + file, e);
+        }
+    }
+
+    /**
+     * Opens the write-ahead log, replaying the records appended after the snapshot
+     * @return the open {@link WriteAheadLog}
+     * @throws UncheckedIOException if the log cannot be opened or read
+     */
+    private WriteAheadLog openWriteAheadLog() {
+        Path directory = dataDirectory.resolve(LOG_DIRECTORY_NAME);
+        LogDurabilityTypes durability = LogDurabilityTypes.valueOf(
+                System.getProperty(LOG_DURABILITY_PROPERTY, LogDurabilityTypes.PER_BATCH.name()));
+
+        try {
+            return WriteAheadLog.open(directory, snapshot == null ? 0 : snapshot.getSequence(), durability,
+                    Long.getLong(LOG_SYNC_PERIOD_PROPERTY, DEFAULT_LOG_SYNC_PERIOD_MILLIS), new WriteAheadLog.ReplayHandler() {
+                        @Override
+                        public void userSaved(int userId, String name, String email, String password) {
+                            restoreUser(userId, name, email, password);
+                        }
+
+                        @Override
+                        public void todoSaved(int userId, ToDoEntity todo) {
+                            getTodoController(userId).restoreTodo(todo);
+                        }
+
+                        @Override
+                        public void todoDeleted(int userId, int todoId) {
+                            getTodoController(userId).restoreDeletedTodo(todoId);
+                        }
+                    });
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open write-ahead log in " + directory, e);
+        }
+    }
+
+    /**
+     * Puts a user read back from a snapshot or the write-ahead log, replacing the earlier
+     * state of the user with the same id. Users with different ids may be put concurrently.
+     */
+    private void restoreUser(int id, String name, String email, String hashedPassword) {
+        UserEntity user = usersById.get(id);
+
+        if (user == null) {
+            user = newUserEntity(id, name, email, hashedPassword);
+            usersById.put(id, user);
+            lastUserId.accumulateAndGet(id, Math::max);
+        } else {
+            users.remove(user.getEmail(), user);
+            user.setName(name);
+            user.setEmail(email);
+            user.setPassword(hashedPassword);
+        }
+        users.put(email, user);
+    }
+
+    /**
+     * Stops taking snapshots and writing spill files, writes every pending log record and
+     * closes the write-ahead log
+     */
+    void closeWriteAheadLog() {
+        snapshotScheduler.shutdown();
+        todoSpillWriter.shutdown();
+        try {
+            writeAheadLog.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot close write-ahead log", e);
+        }
+    }
+
+    /**
+     * @return the directory named by TODO_SPILL_DIRECTORY_PROPERTY, or a new temporary directory
+     */
+    private static Path todoSpillDirectory() {
+        String directory = System.getProperty(TODO_SPILL_DIRECTORY_PROPERTY);
+        if (directory != null)
+            return Path.of(directory);
+
+        try {
+            return Files.createTempDirectory("todoapp-spill");
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot create Todo spill directory", e);
+        }
     }
 
     /**
@@ -132,25 +971,125 @@ public class UserController {
      * @return The hashed password as a String
      */
     private String hashPassword(String password) {
-        return BCrypt.withDefaults().hashToString(10, password.toCharArray());
+        return BCrypt.withDefaults().hashToString(passwordCost, password.toCharArray());
+    }
+
+    /**
+     * Replaces a verified password hash with one at the higher calibrated cost. The new hash is
+     * only saved if the password has not been changed in the meantime.
+     * @param user The user whose password was verified
+     * @param verifiedHash The hash @param(password) was verified against
+     * @param password The verified password
+     */
+    private void rehashPassword(UserEntity user, String verifiedHash, String password) {
+        String rehashedPassword = hashPassword(password);
+
+        CompletableFuture<Void> logged = null;
+        synchronized (user) {
+            if(user.getPassword().equals(verifiedHash)) {
+                user.setPassword(rehashedPassword);
+                logged = logUser(user);
+            }
+        }
+        WriteAheadLog.awaitDurable(logged);
     }
 
     /**
      * Verifies a password hash with a password string
      * @param password password string
      * @param hashedPassword password hash
-     * @return true if password string and hash match else returns false
+     * @return the BCrypt {@link BCrypt.Result}; verified is true if password string and hash match
      */
-    private static boolean verifyPassword(String password, String hashedPassword) {
-        return BCrypt.verifyer().verify(password.toCharArray(), hashedPassword).verified;
+    private static BCrypt.Result verifyPassword(String password, String hashedPassword) {
+        return BCrypt.verifyer().verify(password.toCharArray(), hashedPassword);
+    }
+
+    /**
+     * Picks the highest BCrypt cost whose hash fits in a time budget. The fastest of a few
+     * hashes at the minimum cost is taken as the base; every extra cost step doubles the work.
+     * @param budgetMillis The time one hash may take
+     * @return a cost between MIN_PASSWORD_COST and MAX_PASSWORD_COST
+     */
+    private static int calibratePasswordCost(long budgetMillis) {
+        char[] sample = "calibration-sample".toCharArray();
+        BCrypt.Hasher hasher = BCrypt.withDefaults();
+
+        long fastestNanos = Long.MAX_VALUE;
+        for (int run = 0; run < CALIBRATION_RUNS; run++) {
+            long start = System.nanoTime();
+            hasher.hash(MIN_PASSWORD_COST, sample);
+            fastestNanos = Math.min(fastestNanos, System.nanoTime() - start);
+        }
+        double millis = Math.max(fastestNanos / 1_000_000.0, 0.001);
+
+        int cost = MIN_PASSWORD_COST;
+        while (cost < MAX_PASSWORD_COST && millis * 2 <= budgetMillis) {
+            cost++;
+            millis *= 2;
+        }
+
+        return cost;
     }
 
     /**
-     * Gets all Users from the users OrderedMap
-     * @return a Stream of users OrderedMap entry set.
+     * Gets all Users from the users store. Users are read lazily from the id index,
+     * so nothing is sorted or copied up front.
+     * @return a Stream of users keyed by email, ordered by user id.
      */
     public Stream<OrderedMap.Entry<String, UserEntity>> getAllUsersStream() {
-        return users.entrySet().stream().sorted(OrderedMap.Entry.comparingByValue());
+        return usersById.values().stream().map(user -> Map.entry(user.getEmail(), user));
+    }
+
+    /**
+     * Gets a page of Users ordered by id, in O(log n + @param(limit)) time
+     * @param limit Maximum number of Users in the page
+     * @param cursor Cursor returned with the previous page (null for the first page)
+     * @return a {@link UserPage} of at most @param(limit) Users
+     * @throws IllegalArgumentException if @param(limit) is not positive or @param(cursor) is malformed
+     */
+    public UserPage getUsersPage(int limit, String cursor) {
+        if (limit <= 0)
+            throw new IllegalArgumentException("Page limit must be positive: " + limit);
+
+        List<UserEntity> page = new ArrayList<>(Math.min(limit, 64));
+        for (UserEntity user : usersById.tailMap(UserPage.decodeCursor(cursor), false).values()) {
+            if (page.size() == limit)
+                return new UserPage(page, UserPage.encodeCursor(page.get(limit - 1).getId()));
+            page.add(user);
+        }
+
+        return new UserPage(page, null);
+    }
+
+    /**
+     * Finds Todos by Title or Description across every user, searching users in parallel.
+     * The search stops as soon as @param(limit) matches have been found. Users whose Todos are
+     * not in memory are read from disk for the search only, so no active user is evicted.
+     * @param query Query text to be searched
+     * @param property Todo Property to be searched
+     * @param useStrict boolean flag to decide how the search should be performed
+     * @param limit Maximum number of matches to return
+     * @return the matching Todos paired with the user owning them, in no particular order
+     */
+    public List<Map.Entry<UserEntity, ToDoEntity>> findTodoAcrossUsers(String query, TodoEntityProperties property, boolean useStrict, int limit) {
+        Predicate<ToDoEntity> matcher = ToDoController.matcher(query, property, useStrict);
+        return CrossUserTodoSearch.search(usersById, user -> findTodosOf(user,
+                toDoController -> toDoController.findTodoStream(query, property, useStrict), matcher), limit);
+    }
+
+    /**
+     * Finds Todos by CreatedAt across every user, searching users in parallel.
+     * The search stops as soon as @param(limit) matches have been found. Users whose Todos are
+     * not in memory are read from disk for the search only, so no active user is evicted.
+     * @param query Query text to be searched
+     * @param queryType Date format/type the @param(query) is in.
+     * @param limit Maximum number of matches to return
+     * @return the matching Todos paired with the user owning them, in no particular order
+     */
+    public List<Map.Entry<UserEntity, ToDoEntity>> findTodoAcrossUsers(String query, CreatedAtQueryTypes queryType, int limit) {
+        Predicate<ToDoEntity> matcher = ToDoController.matcher(query, queryType);
+        return CrossUserTodoSearch.search(usersById, user -> findTodosOf(user,
+                toDoController -> toDoController.findTodoStream(query, queryType), matcher), limit);
     }
 
     /**
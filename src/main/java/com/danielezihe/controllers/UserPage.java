@@ -0,0 +1,62 @@
+package com.danielezihe.controllers;
+
+import com.danielezihe.entities.UserEntity;
+
+import java.nio.ByteBuffer;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * A bounded page of Users returned by {@link UserController#getUsersPage(int, String)}.
+ * Pass {@link #getNextCursor()} back to get the following page.
+ */
+public final class UserPage {
+    private final List<UserEntity> users;
+    private final String nextCursor;
+
+    UserPage(List<UserEntity> users, String nextCursor) {
+        this.users = users;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<UserEntity> getUsers() {
+        return users;
+    }
+
+    /**
+     * @return an opaque continuation token for the next page (null if this is the last page)
+     */
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public boolean hasNext() {
+        return nextCursor != null;
+    }
+
+    /**
+     * Encodes a position in the user listing as an opaque cursor
+     * @param userId Id of the last User returned
+     * @return the encoded cursor
+     */
+    static String encodeCursor(int userId) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(ByteBuffer.allocate(Integer.BYTES).putInt(userId).array());
+    }
+
+    /**
+     * Decodes a cursor produced by {@link #encodeCursor(int)}
+     * @param cursor The cursor to be decoded (null for the first page)
+     * @return the id of the last User returned (0 for the first page)
+     * @throws IllegalArgumentException if the cursor is malformed
+     */
+    static int decodeCursor(String cursor) {
+        if (cursor == null)
+            return 0;
+
+        byte[] bytes = Base64.getUrlDecoder().decode(cursor);
+        if (bytes.length != Integer.BYTES)
+            throw new IllegalArgumentException("Invalid cursor: " + cursor);
+
+        return ByteBuffer.wrap(bytes).getInt();
+    }
+}
@@ -0,0 +1,500 @@
+package com.danielezihe.controllers;
+
+import com.danielezihe.entities.ToDoEntity;
+import com.danielezihe.entities.UserEntity;
+import com.danielezihe.entities.util.LogDurabilityTypes;
+import com.danielezihe.entities.util.ToDoStatus;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only binary log of every change to users and Todos, replayed at startup to
+ * rebuild them.
+ * <p>
+ * The log is a directory of segment files, each named after the sequence number of its
+ * first record. Records are appended to the newest segment; {@link #rollover()} starts a
+ * new one, so that segments holding only records already covered by a snapshot can be
+ * deleted with {@link #deleteSegmentsBefore(long)}.
+ * <p>
+ * Each record holds the full new state of one user or Todo, or the id of a deleted Todo,
+ * so replaying a record twice leaves the same state as replaying it once. A record is
+ * framed as its payload length, a CRC32 of the payload and the payload: a sequence number,
+ * a record type and the record fields. A torn or corrupt tail left by a crash is cut off
+ * the newest segment when the log is opened.
+ * <p>
+ * Appends are queued and written by a single writer thread, which drains every queued
+ * append into one batch. How far a batch is synced before its appends complete depends on
+ * the {@link LogDurabilityTypes}: PER_OP syncs after every append, PER_BATCH once per batch
+ * (group commit) and PERIODIC completes appends at once and syncs on a fixed period.
+ */
+final class WriteAheadLog implements Closeable {
+    private static final byte USER_SAVED = 1;
+    private static final byte TODO_SAVED = 2;
+    private static final byte TODO_DELETED = 3;
+    private static final int FRAME_HEADER_BYTES = 2 * Integer.BYTES;
+    private static final String SEGMENT_PREFIX = "wal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    private static final PendingAppend CLOSE = new PendingAppend(null, null, 0);
+
+    /**
+     * Receives the records of a log being replayed, in the order they were appended
+     */
+    interface ReplayHandler {
+        void userSaved(int userId, String name, String email, String password);
+
+        void todoSaved(int userId, ToDoEntity todo);
+
+        void todoDeleted(int userId, int todoId);
+    }
+
+    /**
+     * Queued appended records, or (when frames is null and rolloverSequence is set) a request to
+     * start a new segment after the record with that sequence number
+     */
+    private record PendingAppend(ByteBuffer frames, CompletableFuture<Void> written, long rolloverSequence) {
+    }
+
+    private final Path directory;
+    private final LogDurabilityTypes durability;
+    private final long periodNanos;
+    private final BlockingQueue<PendingAppend> pending = new LinkedBlockingQueue<>();
+    private final Object appendLock = new Object();
+    private final Thread writer;
+    private long lastSequence;
+    private boolean closed;
+    private volatile UncheckedIOException broken;
+    private FileChannel channel;
+
+    private WriteAheadLog(Path directory, FileChannel channel, long lastSequence, LogDurabilityTypes durability, long periodMillis) {
+        this.directory = directory;
+        this.channel = channel;
+        this.lastSequence = lastSequence;
+        this.durability = durability;
+        this.periodNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(periodMillis, 1));
+        this.writer = new Thread(this::writeAppends, "write-ahead-log");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * Opens a log, replaying the records already in it before new records can be appended
+     * @param directory The directory holding the log segments, created if missing
+     * @param afterSequence Records up to this sequence number are skipped, as they are
+     *                      already covered by a snapshot (0 to replay every record)
+     * @param durability When appended records are synced to disk
+     * @param periodMillis The sync period for PERIODIC durability
+     * @param handler Receives the replayed records
+     * @return the open {@link WriteAheadLog}
+     * @throws IOException if the log cannot be opened or read, or a segment other than the
+     * newest is corrupt
+     */
+    static WriteAheadLog open(Path directory, long afterSequence, LogDurabilityTypes durability, long periodMillis,
+                              ReplayHandler handler) throws IOException {
+        Files.createDirectories(directory);
+        List<Path> segments = segments(directory);
+        long lastSequence = afterSequence;
+
+        for (int i = 0; i < segments.size() - 1; i++) {
+            try (FileChannel segment = FileChannel.open(segments.get(i), StandardOpenOption.READ)) {
+                long[] end = replay(segment, afterSequence, handler);
+                if (end[0] < segment.size())
+                    throw new IOException("Corrupt write-ahead log segment " + segments.get(i));
+                lastSequence = Math.max(lastSequence, end[1]);
+            }
+        }
+
+        Path newest = segments.isEmpty() ? segmentFile(directory, afterSequence + 1) : segments.get(segments.size() - 1);
+        FileChannel channel = FileChannel.open(newest, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            long[] end = replay(channel, afterSequence, handler);
+            if (end[0] < channel.size())
+                channel.truncate(end[0]);
+            channel.position(end[0]);
+            return new WriteAheadLog(directory, channel, Math.max(lastSequence, end[1]), durability, periodMillis);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Encodes the state of a user
+     * @param user The user to be recorded
+     * @return the record body
+     */
+    static byte[] userRecord(UserEntity user) {
+        return encode(output -> {
+            output.writeByte(USER_SAVED);
+            output.writeInt(user.getId());
+            TodoSpillFiles.writeText(output, user.getName());
+            TodoSpillFiles.writeText(output, user.getEmail());
+            TodoSpillFiles.writeText(output, user.getPassword());
+        });
+    }
+
+    /**
+     * Encodes the state of a Todo
+     * @param userId The id of the user owning the Todo
+     * @param todo The Todo to be recorded
+     * @return the record body
+     */
+    static byte[] todoRecord(int userId, ToDoEntity todo) {
+        return encode(output -> {
+            output.writeByte(TODO_SAVED);
+            output.writeInt(userId);
+            output.writeInt(todo.getId());
+            output.writeLong(todo.getCreatedAt());
+            output.writeByte(todo.getStatus().ordinal());
+            TodoSpillFiles.writeText(output, todo.getTitle());
+            TodoSpillFiles.writeText(output, todo.getDescription());
+        });
+    }
+
+    /**
+     * Encodes the deletion of a Todo
+     * @param userId The id of the user owning the Todo
+     * @param todoId The id of the deleted Todo
+     * @return the record body
+     */
+    static byte[] todoDeletedRecord(int userId, int todoId) {
+        return encode(output -> {
+            output.writeByte(TODO_DELETED);
+            output.writeInt(userId);
+            output.writeInt(todoId);
+        });
+    }
+
+    /**
+     * Appends records. Records appended by one call are written together and in order, and
+     * records of calls made one after the other are written in call order.
+     * @param records The record bodies to be appended
+     * @return a future completing once the records are as durable as configured; it fails
+     * with {@link UncheckedIOException} if they could not be written, or at once if an earlier
+     * failed write could not be cut off the log
+     * @throws IllegalStateException if the log is closed
+     */
+    CompletableFuture<Void> append(List<byte[]> records) {
+        int size = 0;
+        for (byte[] record : records)
+            size += FRAME_HEADER_BYTES + Long.BYTES + record.length;
+        ByteBuffer frames = ByteBuffer.allocate(size);
+        CompletableFuture<Void> written = new CompletableFuture<>();
+
+        synchronized (appendLock) {
+            if (closed)
+                throw new IllegalStateException("Write-ahead log is closed");
+            if (broken != null)
+                return CompletableFuture.failedFuture(broken);
+
+            CRC32 crc = new CRC32();
+            for (byte[] record : records) {
+                ByteBuffer payload = ByteBuffer.allocate(Long.BYTES + record.length).putLong(++lastSequence).put(record).flip();
+                crc.reset();
+                crc.update(payload.duplicate());
+                frames.putInt(payload.remaining()).putInt((int) crc.getValue()).put(payload);
+            }
+            pending.add(new PendingAppend(frames.flip(), written, 0));
+        }
+
+        return durability == LogDurabilityTypes.PERIODIC ? CompletableFuture.completedFuture(null) : written;
+    }
+
+    /**
+     * Waits until appended records are as durable as the log is configured for
+     * @param appended The future returned by {@link #append(List)} or {@link #rollover()}
+     *                 (null if nothing was appended)
+     * @return the value of @param(appended)
+     * @throws UncheckedIOException if the records could not be written
+     */
+    static <T> T awaitDurable(CompletableFuture<T> appended) {
+        if (appended == null)
+            return null;
+
+        try {
+            return appended.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause)
+                throw cause;
+            throw e;
+        }
+    }
+
+    /**
+     * @return the sequence number of the last record appended
+     */
+    long lastSequence() {
+        synchronized (appendLock) {
+            return lastSequence;
+        }
+    }
+
+    /**
+     * Starts a new segment. Every record appended before this call stays in the older
+     * segments and every record appended after it goes to the new one.
+     * @return a future completing with the sequence number of the last record in the older
+     * segments once they are synced; it fails with {@link UncheckedIOException} if the new
+     * segment could not be started, in which case records keep going to the current one
+     * @throws IllegalStateException if the log is closed
+     */
+    CompletableFuture<Long> rollover() {
+        CompletableFuture<Void> rolled = new CompletableFuture<>();
+        long sequence;
+
+        synchronized (appendLock) {
+            if (closed)
+                throw new IllegalStateException("Write-ahead log is closed");
+            if (broken != null)
+                return CompletableFuture.failedFuture(broken);
+
+            sequence = lastSequence;
+            pending.add(new PendingAppend(null, rolled, sequence));
+        }
+
+        return rolled.thenApply(ignored -> sequence);
+    }
+
+    /**
+     * Deletes the segments that only hold records older than a sequence number
+     * @param firstSequence The sequence number of the first record that must be kept; it
+     *                      should be one past a sequence number returned by {@link #rollover()}
+     * @throws IOException if a segment cannot be deleted
+     */
+    void deleteSegmentsBefore(long firstSequence) throws IOException {
+        List<Path> segments = segments(directory);
+        for (int i = 0; i < segments.size() - 1; i++) {
+            if (firstSequenceOf(segments.get(i + 1)) <= firstSequence)
+                Files.deleteIfExists(segments.get(i));
+        }
+    }
+
+    /**
+     * Writes every queued record, syncs the log and closes it
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (appendLock) {
+            if (closed)
+                return;
+            closed = true;
+            pending.add(CLOSE);
+        }
+
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        channel.close();
+    }
+
+    /**
+     * Writer thread loop, writing queued appends in batches until the log is closed. After a
+     * failed write the segment is cut back to the end of the last append written whole, so
+     * later appends never follow a partial frame that replay would stop at.
+     */
+    private void writeAppends() {
+        List<PendingAppend> batch = new ArrayList<>();
+        long nextSyncNanos = System.nanoTime() + periodNanos;
+        long writtenEnd = position(channel);
+        boolean unsynced = false;
+        boolean closing = false;
+
+        while (!closing) {
+            try {
+                PendingAppend first = durability == LogDurabilityTypes.PERIODIC
+                        ? pending.poll(Math.max(nextSyncNanos - System.nanoTime(), 0), TimeUnit.NANOSECONDS)
+                        : pending.take();
+                if (first != null) {
+                    batch.add(first);
+                    pending.drainTo(batch);
+                }
+            } catch (InterruptedException e) {
+                continue;
+            }
+
+            closing = batch.remove(CLOSE);
+            try {
+                if (broken != null)
+                    throw broken.getCause();
+
+                for (PendingAppend append : batch) {
+                    if (append.frames() == null) {
+                        channel.force(false);
+                        unsynced = false;
+                        FileChannel older = channel;
+                        channel = FileChannel.open(segmentFile(directory, append.rolloverSequence() + 1),
+                                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+                        writtenEnd = 0;
+                        older.close();
+                        continue;
+                    }
+                    while (append.frames().hasRemaining())
+                        channel.write(append.frames());
+                    writtenEnd = channel.position();
+                    if (durability == LogDurabilityTypes.PER_OP) {
+                        channel.force(false);
+                        append.written().complete(null);
+                    }
+                }
+
+                if (durability == LogDurabilityTypes.PER_BATCH && !batch.isEmpty())
+                    channel.force(false);
+                unsynced |= durability == LogDurabilityTypes.PERIODIC && !batch.isEmpty();
+                if (unsynced && (closing || System.nanoTime() - nextSyncNanos >= 0)) {
+                    channel.force(false);
+                    unsynced = false;
+                }
+                batch.forEach(append -> append.written().complete(null));
+            } catch (IOException e) {
+                UncheckedIOException failure = broken != null ? broken : new UncheckedIOException("Cannot write to write-ahead log", e);
+                if (broken == null)
+                    cutBack(writtenEnd, failure);
+                batch.forEach(append -> append.written().completeExceptionally(failure));
+            }
+
+            if (System.nanoTime() - nextSyncNanos >= 0)
+                nextSyncNanos = System.nanoTime() + periodNanos;
+            batch.clear();
+        }
+    }
+
+    /**
+     * Cuts the current segment back to the end of the last append written whole. If that
+     * fails too the log is marked broken, and every later append fails at once.
+     * @param writtenEnd The position the segment is cut back to
+     * @param failure The failure of the write being undone
+     */
+    private void cutBack(long writtenEnd, UncheckedIOException failure) {
+        try {
+            channel.truncate(writtenEnd);
+            channel.position(writtenEnd);
+        } catch (IOException e) {
+            failure.addSuppressed(e);
+            broken = failure;
+        }
+    }
+
+    /**
+     * @return the position of a freshly opened segment, or 0 if it cannot be read
+     */
+    private static long position(FileChannel channel) {
+        try {
+            return channel.position();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Replays the records of a segment, stopping at the first torn or corrupt record
+     * @return the position just after the last good record and the last sequence number read
+     */
+    private static long[] replay(FileChannel channel, long afterSequence, ReplayHandler handler) throws IOException {
+        long size = channel.size();
+        long position = 0;
+        long lastSequence = 0;
+        DataInputStream input = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel.position(0))));
+        CRC32 crc = new CRC32();
+
+        while (size - position >= FRAME_HEADER_BYTES) {
+            int length = input.readInt();
+            int checksum = input.readInt();
+            if (length < Long.BYTES + 1 || length > size - position - FRAME_HEADER_BYTES)
+                break;
+
+            byte[] payload = new byte[length];
+            input.readFully(payload);
+            crc.reset();
+            crc.update(payload);
+            if ((int) crc.getValue() != checksum)
+                break;
+
+            lastSequence = applyRecord(payload, afterSequence, handler);
+            position += FRAME_HEADER_BYTES + length;
+        }
+
+        return new long[]{position, lastSequence};
+    }
+
+    /**
+     * Decodes one record payload and hands it to a {@link ReplayHandler}, unless it is
+     * covered by a snapshot
+     * @return the sequence number of the record
+     */
+    private static long applyRecord(byte[] payload, long afterSequence, ReplayHandler handler) throws IOException {
+        DataInputStream record = new DataInputStream(new ByteArrayInputStream(payload));
+        long sequence = record.readLong();
+        if (sequence <= afterSequence)
+            return sequence;
+        byte type = record.readByte();
+
+        switch (type) {
+            case USER_SAVED -> handler.userSaved(record.readInt(), TodoSpillFiles.readText(record),
+                    TodoSpillFiles.readText(record), TodoSpillFiles.readText(record));
+            case TODO_SAVED -> {
+                int userId = record.readInt();
+                int todoId = record.readInt();
+                long createdAt = record.readLong();
+                ToDoStatus status = ToDoStatus.values()[record.readByte()];
+                handler.todoSaved(userId, new ToDoEntity(todoId, TodoSpillFiles.readText(record),
+                        TodoSpillFiles.readText(record), status, createdAt));
+            }
+            case TODO_DELETED -> handler.todoDeleted(record.readInt(), record.readInt());
+            default -> throw new IOException("Unknown write-ahead log record type " + type);
+        }
+
+        return sequence;
+    }
+
+    /**
+     * @return the segment files of a log, oldest first
+     */
+    private static List<Path> segments(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> {
+                String name = file.getFileName().toString();
+                return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+            }).sorted(Comparator.comparingLong(WriteAheadLog::firstSequenceOf)).toList();
+        }
+    }
+
+    private static Path segmentFile(Path directory, long firstSequence) {
+        return directory.resolve(SEGMENT_PREFIX + String.format("%020d", firstSequence) + SEGMENT_SUFFIX);
+    }
+
+    private static long firstSequenceOf(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    private interface RecordWriter {
+        void write(DataOutputStream output) throws IOException;
+    }
+
+    private static byte[] encode(RecordWriter writer) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        try (DataOutputStream output = new DataOutputStream(bytes)) {
+            writer.write(output);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+}
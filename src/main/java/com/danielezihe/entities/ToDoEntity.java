@@ -1,5 +1,6 @@
 package com.danielezihe.entities;
 
+import com.danielezihe.entities.util.CompactText;
 import com.danielezihe.entities.util.ToDoStatus;
 
 /**
@@ -8,25 +9,26 @@ import com.danielezihe.entities.util.ToDoStatus;
  */
 public class ToDoEntity implements Comparable<ToDoEntity> {
     private final int id;
-    private String title;
-    private String description;
-    private ToDoStatus status;
+    // Pooled forms from CompactText.compact: a String, or a CompactText for long texts
+    private volatile Object title;
+    private volatile Object description;
+    private volatile ToDoStatus status;
     private final long createdAt;
 
     public ToDoEntity(int id, String title, String description, ToDoStatus status, long createdAt) {
         this.id = id;
-        this.title = title;
-        this.description = description;
+        this.title = CompactText.compact(title);
+        this.description = CompactText.compact(description);
         this.status = status;
         this.createdAt = createdAt;
     }
 
     public void setTitle(String title) {
-        this.title = title;
+        this.title = CompactText.compact(title);
     }
 
     public void setDescription(String description) {
-        this.description = description;
+        this.description = CompactText.compact(description);
     }
 
     public void setStatus(ToDoStatus status) {
@@ -42,10 +44,26 @@ public class ToDoEntity implements Comparable<ToDoEntity> {
     }
 
     public String getTitle() {
-        return title;
+        return CompactText.expand(title);
     }
 
     public String getDescription() {
+        return CompactText.expand(description);
+    }
+
+    /**
+     * @return the Title in the pooled form returned by {@link CompactText#compact(String)},
+     * shared by every Todo with the same Title
+     */
+    public Object getCompactTitle() {
+        return title;
+    }
+
+    /**
+     * @return the Description in the pooled form returned by {@link CompactText#compact(String)},
+     * shared by every Todo with the same Description
+     */
+    public Object getCompactDescription() {
         return description;
     }
 
@@ -53,11 +71,12 @@ public class ToDoEntity implements Comparable<ToDoEntity> {
         return createdAt;
     }
 
+    /**
+     * Orders Todos by status (ACTIVE first), then by id
+     */
     @Override
     public int compareTo(ToDoEntity o) {
-        if(this.getStatus() == ToDoStatus.ACTIVE && o.getStatus() == ToDoStatus.COMPLETED)
-            return -1;
-        else
-            return 1;
+        int byStatus = this.getStatus().compareTo(o.getStatus());
+        return byStatus != 0 ? byStatus : Integer.compare(this.getId(), o.getId());
     }
 }
@@ -2,18 +2,28 @@ package com.danielezihe.entities;
 
 import com.danielezihe.controllers.ToDoController;
 
+import java.util.function.Supplier;
+
 /**
  * @author EZIHE S. DANIEL
  * CreatedAt: 09/10/2021
  */
 public final class UserEntity implements Comparable<UserEntity> {
     private final int id;
-    private String name;
-    private String email;
-    private transient String password;
-    private final transient ToDoController myTodoController;
+    private volatile String name;
+    private volatile String email;
+    private transient volatile String password;
+    private final transient Supplier<ToDoController> myTodoController;
 
     public UserEntity(int id, String name, String email, String password, ToDoController myTodoController) {
+        this(id, name, email, password, () -> myTodoController);
+    }
+
+    /**
+     * Creates a user whose Todos are loaded on demand
+     * @param myTodoController Supplies the user's {@link ToDoController}, loading it on first access
+     */
+    public UserEntity(int id, String name, String email, String password, Supplier<ToDoController> myTodoController) {
         this.id = id;
         this.name = name;
         this.email = email;
@@ -49,8 +59,13 @@ public final class UserEntity implements Comparable<UserEntity> {
         return id;
     }
 
+    /**
+     * Gets the user's Todos, loading them if they are not in memory. The controller may be
+     * evicted once idle, so callers should fetch it again rather than keep it.
+     * @return the user's {@link ToDoController}
+     */
     public ToDoController getMyTodoController() {
-        return myTodoController;
+        return myTodoController.get();
     }
 
     @Override
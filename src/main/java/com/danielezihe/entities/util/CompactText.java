@@ -0,0 +1,120 @@
+package com.danielezihe.entities.util;
+
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Shared, compact storage for Todo titles and descriptions.
+ * <p>
+ * Texts are interned in JVM-wide weak pools, so identical texts across all users' Todos share
+ * one object. Short texts are kept as the pooled {@link String} itself, which is already
+ * stored at one byte per character for Latin-1 text, so they cost no wrapper. Only long texts
+ * get a {@link CompactText}: they are kept as UTF-8 bytes, deflated when that makes them
+ * smaller, and are only decoded when {@link #toString()} is called.
+ */
+public final class CompactText {
+    static final int ENCODE_THRESHOLD = 128;
+
+    private static final Interner<String> SHORT_TEXTS = Interners.newWeakInterner();
+    private static final Interner<CompactText> ENCODED_TEXTS = Interners.newWeakInterner();
+
+    private final byte[] bytes;
+    private final int decodedLength;
+    private final int hash;
+
+    private CompactText(byte[] bytes, int decodedLength) {
+        this.bytes = bytes;
+        this.decodedLength = decodedLength;
+        this.hash = 31 * Arrays.hashCode(bytes) + decodedLength;
+    }
+
+    /**
+     * Gets the pooled form of a text, to be read back with {@link #expand(Object)}
+     * @param text The text to be stored (may be null)
+     * @return the shared {@link String} for a short @param(text), the shared {@link CompactText}
+     * for a long one, or null if @param(text) is null
+     */
+    public static Object compact(String text) {
+        if (text == null)
+            return null;
+        if (text.length() < ENCODE_THRESHOLD)
+            return SHORT_TEXTS.intern(text);
+
+        byte[] utf8 = text.getBytes(StandardCharsets.UTF_8);
+        byte[] deflated = deflate(utf8);
+        return deflated.length < utf8.length
+                ? ENCODED_TEXTS.intern(new CompactText(deflated, utf8.length))
+                : ENCODED_TEXTS.intern(new CompactText(utf8, -1));
+    }
+
+    /**
+     * Gets a text back from the form returned by {@link #compact(String)}
+     * @param compacted The pooled form of the text (may be null)
+     * @return the text, decoded if it is kept encoded, or null if @param(compacted) is null
+     */
+    public static String expand(Object compacted) {
+        return compacted == null ? null : compacted.toString();
+    }
+
+    /**
+     * @return the stored text, decoded on each call
+     */
+    @Override
+    public String toString() {
+        if (decodedLength < 0)
+            return new String(bytes, StandardCharsets.UTF_8);
+        return new String(inflate(bytes, decodedLength), StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o)
+            return true;
+        if (!(o instanceof CompactText other) || hash != other.hash)
+            return false;
+        return decodedLength == other.decodedLength && Arrays.equals(bytes, other.bytes);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    private static byte[] deflate(byte[] input) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(input);
+            deflater.finish();
+            ByteArrayOutputStream output = new ByteArrayOutputStream(input.length / 2);
+            byte[] buffer = new byte[512];
+            while (!deflater.finished())
+                output.write(buffer, 0, deflater.deflate(buffer));
+            return output.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] inflate(byte[] input, int decodedLength) {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(input);
+            byte[] output = new byte[decodedLength];
+            int read = 0;
+            while (read < decodedLength && !inflater.finished())
+                read += inflater.inflate(output, read, decodedLength - read);
+            return output;
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Corrupted compact text", e);
+        } finally {
+            inflater.end();
+        }
+    }
+}
@@ -0,0 +1,7 @@
+package com.danielezihe.entities.util;
+
+public enum CreatedAtRangeQueryTypes {
+    BETWEEN,
+    LAST_DAYS,
+    NEWEST,
+}
@@ -0,0 +1,7 @@
+package com.danielezihe.entities.util;
+
+public enum LogDurabilityTypes {
+    PER_OP,
+    PER_BATCH,
+    PERIODIC,
+}
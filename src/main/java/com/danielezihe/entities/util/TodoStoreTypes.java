@@ -0,0 +1,6 @@
+package com.danielezihe.entities.util;
+
+public enum TodoStoreTypes {
+    OBJECTS,
+    COLUMNAR,
+}
@@ -0,0 +1,112 @@
+package com.danielezihe.controllers;
+
+import com.danielezihe.entities.ToDoEntity;
+import com.danielezihe.entities.util.ToDoStatus;
+import com.danielezihe.entities.util.TodoStoreTypes;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks the views the columnar store hands out against plain collections holding the same Todos.
+ */
+class ColumnarTodoStoreTest {
+    private static final int TODOS = 200;
+
+    @Test
+    void statusIdsBehaveLikeSortedSetOfSameIds() {
+        ColumnarTodoStore store = new ColumnarTodoStore();
+        TreeSet<Integer> completedIds = new TreeSet<>();
+        Random random = new Random(42);
+        for (int id = 1; id <= TODOS; id++) {
+            // Leave gaps, so ids missing from the store are covered too
+            if (random.nextInt(4) == 0)
+                continue;
+            boolean completed = random.nextBoolean();
+            store.put(new ToDoEntity(id, "title", "description", completed ? ToDoStatus.COMPLETED : ToDoStatus.ACTIVE, id));
+            if (completed)
+                completedIds.add(id);
+        }
+
+        NavigableSet<Integer> statusIds = store.idsWithStatus(ToDoStatus.COMPLETED);
+        assertSameSet(completedIds, statusIds);
+        assertSameSet(completedIds.descendingSet(), statusIds.descendingSet());
+        assertSameSet(completedIds, statusIds.descendingSet().descendingSet());
+        assertSameSet(completedIds.subSet(20, true, 120, false), statusIds.subSet(20, true, 120, false));
+        assertSameSet(completedIds.descendingSet().subSet(150, false, 30, true), statusIds.descendingSet().subSet(150, false, 30, true));
+        assertSameSet(completedIds.descendingSet().headSet(100, true), statusIds.descendingSet().headSet(100, true));
+        assertSameSet(completedIds.descendingSet().tailSet(100, false), statusIds.descendingSet().tailSet(100, false));
+        assertSameSet(completedIds.tailSet(60, false).descendingSet(), statusIds.tailSet(60, false).descendingSet());
+    }
+
+    @Test
+    void statusIdsAreReadOnly() {
+        ColumnarTodoStore store = new ColumnarTodoStore();
+        NavigableSet<Integer> completedIds = store.idsWithStatus(ToDoStatus.COMPLETED);
+        assertNull(completedIds.pollFirst());
+        assertNull(completedIds.descendingSet().pollLast());
+
+        store.put(new ToDoEntity(1, "title", "description", ToDoStatus.COMPLETED, 0L));
+        assertThrows(UnsupportedOperationException.class, completedIds::pollFirst);
+        assertThrows(UnsupportedOperationException.class, completedIds::pollLast);
+        assertThrows(UnsupportedOperationException.class, () -> completedIds.remove(1));
+        assertTrue(completedIds.contains(1));
+    }
+
+    @Test
+    void viewOfRemovedTodoReadsNothing() {
+        ColumnarTodoStore store = new ColumnarTodoStore();
+        store.put(new ToDoEntity(1, "title", "description", ToDoStatus.COMPLETED, 5L));
+        ToDoEntity view = store.get(1);
+
+        ToDoEntity removed = store.remove(1);
+        view.setTitle("changed");
+
+        assertEquals("title", removed.getTitle());
+        assertEquals(ToDoStatus.COMPLETED, removed.getStatus());
+        assertNull(view.getTitle());
+        assertNull(view.getStatus());
+        assertEquals(0L, view.getCreatedAt());
+        assertNull(store.get(1));
+    }
+
+    @Test
+    void createdTodosAreTheStoresOwn() {
+        ToDoController toDoController = new ToDoController(TodoStoreTypes.COLUMNAR);
+        ToDoEntity created = toDoController.createNewTodo("gym", "morning");
+        List<ToDoEntity> batch = toDoController.createNewTodos(List.of(Map.entry("shop", "milk"), Map.entry("read", "book")));
+
+        created.setStatus(ToDoStatus.COMPLETED);
+        batch.get(1).setTitle("read twice");
+
+        assertEquals(ToDoStatus.COMPLETED, toDoController.getTodo(created.getId()).getStatus());
+        assertEquals("read twice", toDoController.getTodo(batch.get(1).getId()).getTitle());
+        assertEquals(List.of(2, 3), batch.stream().map(ToDoEntity::getId).toList());
+    }
+
+    private static void assertSameSet(NavigableSet<Integer> expected, NavigableSet<Integer> actual) {
+        assertEquals(new ArrayList<>(expected), new ArrayList<>(actual));
+        assertEquals(new ArrayList<>(expected.descendingSet()), toList(actual.descendingIterator()));
+        assertEquals(expected.size(), actual.size());
+        assertEquals(expected.isEmpty(), actual.isEmpty());
+        if (!expected.isEmpty()) {
+            assertEquals(expected.first(), actual.first());
+            assertEquals(expected.last(), actual.last());
+        }
+        for (int id = 0; id <= TODOS + 1; id++) {
+            assertEquals(expected.contains(id), actual.contains(id), "contains " + id);
+            assertEquals(expected.lower(id), actual.lower(id), "lower " + id);
+            assertEquals(expected.floor(id), actual.floor(id), "floor " + id);
+            assertEquals(expected.ceiling(id), actual.ceiling(id), "ceiling " + id);
+            assertEquals(expected.higher(id), actual.higher(id), "higher " + id);
+        }
+    }
+
+    private static List<Integer> toList(Iterator<Integer> iterator) {
+        List<Integer> ids = new ArrayList<>();
+        iterator.forEachRemaining(ids::add);
+        return ids;
+    }
+}
@@ -0,0 +1,46 @@
+package com.danielezihe.controllers;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * Runs the same work on several threads at once, for the concurrency tests.
+ */
+final class ConcurrentTestSupport {
+    static final int THREADS = 8;
+
+    private ConcurrentTestSupport() {
+    }
+
+    interface Work<T> {
+        T run(int thread) throws Exception;
+    }
+
+    /**
+     * Runs the same work on THREADS threads released at the same moment
+     * @return the result of each thread
+     */
+    static <T> List<T> runConcurrently(Work<T> work) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<T>> futures = new ArrayList<>(THREADS);
+            for (int thread = 0; thread < THREADS; thread++) {
+                int current = thread;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return work.run(current);
+                }));
+            }
+            start.countDown();
+
+            List<T> results = new ArrayList<>(THREADS);
+            for (Future<T> future : futures)
+                results.add(future.get(2, TimeUnit.MINUTES));
+            return results;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package com.danielezihe.controllers;
+
+import com.danielezihe.entities.ToDoEntity;
+import com.danielezihe.entities.util.CreatedAtQueryTypes;
+import com.danielezihe.entities.util.ToDoStatus;
+import com.danielezihe.entities.util.TodoEntityProperties;
+import com.danielezihe.entities.util.TodoStoreTypes;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.util.*;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static com.danielezihe.controllers.ConcurrentTestSupport.THREADS;
+import static com.danielezihe.controllers.ConcurrentTestSupport.runConcurrently;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Hammers one {@link ToDoController} from several threads and checks that no id is lost or
+ * handed out twice and that every secondary index agrees with the store afterwards.
+ */
+class ToDoControllerConcurrencyTest {
+    private static final int TODOS_PER_THREAD = 2_000;
+    private static final int BATCH_SIZE = 50;
+
+    @ParameterizedTest
+    @EnumSource(TodoStoreTypes.class)
+    void concurrentCreatesHandOutEveryIdExactlyOnce(TodoStoreTypes storeType) throws Exception {
+        ToDoController controller = new ToDoController(storeType);
+
+        List<List<ToDoEntity>> created = runConcurrently(thread -> {
+            List<ToDoEntity> todos = new ArrayList<>(TODOS_PER_THREAD);
+            if (thread % 2 == 0) {
+                for (int i = 0; i < TODOS_PER_THREAD; i++)
+                    todos.add(controller.createNewTodo("todo " + thread + " " + i, "description " + i));
+            } else {
+                for (int i = 0; i < TODOS_PER_THREAD; i += BATCH_SIZE) {
+                    List<Map.Entry<String, String>> batch = new ArrayList<>(BATCH_SIZE);
+                    for (int j = i; j < i + BATCH_SIZE; j++)
+                        batch.add(Map.entry("todo " + thread + " " + j, "description " + j));
+                    todos.addAll(controller.createNewTodos(batch));
+                }
+            }
+            return todos;
+        });
+
+        int total = THREADS * TODOS_PER_THREAD;
+        Set<Integer> ids = new HashSet<>();
+        created.forEach(todos -> todos.forEach(todo -> assertTrue(ids.add(todo.getId()), "Duplicate id " + todo.getId())));
+        assertEquals(total, ids.size());
+        assertEquals(IntStream.rangeClosed(1, total).boxed().collect(HashSet::new, Set::add, Set::addAll), ids);
+        for (Integer id : ids)
+            assertNotNull(controller.getTodo(id), "Lost Todo " + id);
+
+        assertIndexesMatchStore(controller, total);
+    }
+
+    @ParameterizedTest
+    @EnumSource(TodoStoreTypes.class)
+    void concurrentUpdatesKeepIndexesInStep(TodoStoreTypes storeType) throws Exception {
+        ToDoController controller = new ToDoController(storeType);
+        int total = THREADS * TODOS_PER_THREAD;
+        for (int i = 0; i < total; i += BATCH_SIZE) {
+            List<Map.Entry<String, String>> batch = new ArrayList<>(BATCH_SIZE);
+            for (int j = i; j < i + BATCH_SIZE; j++)
+                batch.add(Map.entry("todo " + j, "description " + j));
+            controller.createNewTodos(batch);
+        }
+
+        List<List<Integer>> deleted = runConcurrently(thread -> {
+            List<Integer> deletedIds = new ArrayList<>();
+            for (int id = thread + 1; id <= total; id += THREADS) {
+                switch (id % 4) {
+                    case 0 -> {
+                        if (controller.deleteTodo(id) != null)
+                            deletedIds.add(id);
+                    }
+                    case 1 -> controller.updateTodo(id, ToDoStatus.COMPLETED);
+                    case 2 -> controller.completeTodos(List.of(id, id - 1));
+                    default -> controller.updateTodo(id, "renamed " + id, TodoEntityProperties.TITLE);
+                }
+            }
+            return deletedIds;
+        });
+
+        int deletedCount = deleted.stream().mapToInt(List::size).sum();
+        assertEquals(total / 4, deletedCount);
+        assertIndexesMatchStore(controller, total - deletedCount);
+    }
+
+    @Test
+    void columnarStoreAnswersQueriesLikeObjectStore() {
+        ToDoController objects = new ToDoController(TodoStoreTypes.OBJECTS);
+        ToDoController columnar = new ToDoController(TodoStoreTypes.COLUMNAR);
+        for (ToDoController controller : List.of(objects, columnar)) {
+            for (int i = 0; i < 100; i++)
+                controller.createNewTodo("todo " + i, "description " + i);
+            controller.completeTodos(IntStream.rangeClosed(1, 100).filter(id -> id % 3 == 0).boxed().toList());
+            controller.deleteTodos(IntStream.rangeClosed(1, 100).filter(id -> id % 7 == 0).boxed().toList());
+        }
+
+        assertEquals(ids(objects.getTodosStream(ToDoStatus.ACTIVE)), ids(columnar.getTodosStream(ToDoStatus.ACTIVE)));
+        assertEquals(ids(objects.getTodosStream(ToDoStatus.COMPLETED)), ids(columnar.getTodosStream(ToDoStatus.COMPLETED)));
+        assertEquals(objects.getAllCompletedTodos().keySet().stream().toList(), columnar.getAllCompletedTodos().keySet().stream().toList());
+        assertEquals(objects.getAllActiveTodos().size(), columnar.getAllActiveTodos().size());
+        assertEquals(objects.getAllActiveTodos().lastKey(), columnar.getAllActiveTodos().lastKey());
+        assertEquals(ids(objects.getActiveTodosPage(10, objects.getActiveTodosPage(10, null).getNextCursor()).getTodos().stream()),
+                ids(columnar.getActiveTodosPage(10, columnar.getActiveTodosPage(10, null).getNextCursor()).getTodos().stream()));
+        assertEquals(ids(objects.getNewestTodosStream()), ids(columnar.getNewestTodosStream()));
+        assertEquals(ids(objects.findTodosCreatedInLastDays(1).values().stream()), ids(columnar.findTodosCreatedInLastDays(1).values().stream()));
+
+        String today = TodoCreatedAtIndex.SHORT_DATE_FORMAT.format(TodoCreatedAtIndex.toLocalDateTime(objects.getTodo(1).getCreatedAt()));
+        assertEquals(ids(objects.findTodoStream(today, CreatedAtQueryTypes.SHORT_DATE)), ids(columnar.findTodoStream(today, CreatedAtQueryTypes.SHORT_DATE)));
+        assertFalse(ids(columnar.findTodoStream(today, CreatedAtQueryTypes.SHORT_DATE)).isEmpty());
+
+        assertEquals(columnar.getTodo(1), columnar.getTodo(1));
+        assertEquals(columnar.getTodo(1).hashCode(), columnar.getTodo(1).hashCode());
+        assertTrue(columnar.getAllActiveTodos().containsValue(columnar.getTodo(1)));
+        assertNotEquals(columnar.getTodo(1), columnar.getTodo(2));
+    }
+
+    private static List<Integer> ids(Stream<ToDoEntity> todos) {
+        return todos.map(ToDoEntity::getId).toList();
+    }
+
+    private static void assertIndexesMatchStore(ToDoController controller, int expected) {
+        assertEquals(expected, controller.getStoredTodoCount());
+
+        long active = controller.getTodosStream(ToDoStatus.ACTIVE).count();
+        long completed = controller.getTodosStream(ToDoStatus.COMPLETED).count();
+        assertEquals(expected, active + completed);
+        assertEquals(active, controller.countTodos(ToDoStatus.ACTIVE));
+        assertEquals(completed, controller.countTodos(ToDoStatus.COMPLETED));
+
+        assertEquals(expected, controller.getAllTodos().count());
+        assertEquals(expected, controller.getNewestTodosStream().count());
+        assertEquals(expected, controller.getTodosCreatedPerDay().values().stream().mapToInt(Integer::intValue).sum());
+        assertEquals(expected, controller.findTodoStream("description", TodoEntityProperties.DESCRIPTION, false).count());
+    }
+}
@@ -0,0 +1,119 @@
+package com.danielezihe.controllers;
+
+import com.danielezihe.entities.ToDoEntity;
+import com.danielezihe.entities.util.ToDoStatus;
+import com.danielezihe.entities.util.TodoEntityProperties;
+import com.danielezihe.entities.util.TodoStoreTypes;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Walks paginated listings page by page and checks that the pages add up to the full
+ * listing, also when Todos change between pages.
+ */
+class ToDoControllerPagingTest {
+    private static final int TODOS = 95;
+
+    @ParameterizedTest
+    @EnumSource(TodoStoreTypes.class)
+    void pagesCoverStatusListingOnce(TodoStoreTypes storeType) {
+        ToDoController controller = controllerWithTodos(storeType);
+
+        assertEquals(ids(controller.getTodosStream(ToDoStatus.ACTIVE).toList()), walk(cursor -> controller.getActiveTodosPage(10, cursor)));
+        assertEquals(ids(controller.getTodosStream(ToDoStatus.COMPLETED).toList()), walk(cursor -> controller.getCompletedTodosPage(7, cursor)));
+    }
+
+    @ParameterizedTest
+    @EnumSource(TodoStoreTypes.class)
+    void allTodosPagesCrossFromActiveToCompleted(TodoStoreTypes storeType) {
+        ToDoController controller = controllerWithTodos(storeType);
+        List<Integer> expected = new ArrayList<>(ids(controller.getTodosStream(ToDoStatus.ACTIVE).toList()));
+        expected.addAll(ids(controller.getTodosStream(ToDoStatus.COMPLETED).toList()));
+
+        assertEquals(expected, walk(cursor -> controller.getAllTodosPage(6, cursor)));
+        assertEquals(expected, walk(cursor -> controller.getAllTodosPage(TODOS, cursor)));
+    }
+
+    @Test
+    void lastFullPageHasNoCursor() {
+        ToDoController controller = controllerWithTodos(TodoStoreTypes.OBJECTS);
+        int active = (int) controller.getTodosStream(ToDoStatus.ACTIVE).count();
+
+        TodoPage page = controller.getActiveTodosPage(active, null);
+        assertEquals(active, page.getTodos().size());
+        assertFalse(page.hasNext());
+        assertNull(page.getNextCursor());
+    }
+
+    @Test
+    void cursorResumesAfterLastTodoWhateverChangedMeanwhile() {
+        ToDoController controller = controllerWithTodos(TodoStoreTypes.OBJECTS);
+        TodoPage first = controller.findTodoPage("todo", TodoEntityProperties.TITLE, false, 10, null);
+        int lastId = first.getTodos().get(9).getId();
+
+        controller.deleteTodo(lastId);
+        controller.deleteTodo(lastId + 1);
+        TodoPage second = controller.findTodoPage("todo", TodoEntityProperties.TITLE, false, 10, first.getNextCursor());
+
+        assertEquals(lastId + 2, second.getTodos().get(0).getId());
+        assertEquals(10, second.getTodos().size());
+    }
+
+    @Test
+    void badLimitsAndCursorsAreRefused() {
+        ToDoController controller = controllerWithTodos(TodoStoreTypes.OBJECTS);
+
+        assertThrows(IllegalArgumentException.class, () -> controller.getActiveTodosPage(0, null));
+        assertThrows(IllegalArgumentException.class, () -> controller.getAllTodosPage(-1, null));
+        assertThrows(IllegalArgumentException.class, () -> controller.getActiveTodosPage(10, "not a cursor"));
+        assertThrows(IllegalArgumentException.class, () -> controller.getActiveTodosPage(10, "AAAA"));
+        assertThrows(IllegalArgumentException.class, () -> controller.getAllTodosPage(10, TodoPage.encodeCursor(ToDoStatus.values().length, 1)));
+    }
+
+    @Test
+    void cursorRoundTrips() {
+        for (int[] position : List.of(new int[]{0, 0}, new int[]{1, 42}, new int[]{0, Integer.MAX_VALUE}))
+            assertArrayEquals(position, TodoPage.decodeCursor(TodoPage.encodeCursor(position[0], position[1])));
+        assertArrayEquals(new int[]{0, 0}, TodoPage.decodeCursor(null));
+    }
+
+    /**
+     * Creates TODOS Todos, completes every third one and deletes every tenth one
+     */
+    private static ToDoController controllerWithTodos(TodoStoreTypes storeType) {
+        ToDoController controller = new ToDoController(storeType);
+        controller.createNewTodos(IntStream.rangeClosed(1, TODOS).mapToObj(i -> Map.entry("todo " + i, "description " + i)).toList());
+        controller.completeTodos(IntStream.rangeClosed(1, TODOS).filter(id -> id % 3 == 0).boxed().toList());
+        controller.deleteTodos(IntStream.rangeClosed(1, TODOS).filter(id -> id % 10 == 0).boxed().toList());
+        return controller;
+    }
+
+    /**
+     * Follows the cursors from the first page to the last
+     * @return the ids of every page, in order
+     */
+    private static List<Integer> walk(Function<String, TodoPage> pages) {
+        List<Integer> ids = new ArrayList<>();
+        String cursor = null;
+        do {
+            TodoPage page = pages.apply(cursor);
+            assertFalse(page.getTodos().isEmpty(), "Empty page before the last one");
+            ids.addAll(ids(page.getTodos()));
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+        return ids;
+    }
+
+    private static List<Integer> ids(List<ToDoEntity> todos) {
+        return todos.stream().map(ToDoEntity::getId).toList();
+    }
+}
@@ -0,0 +1,100 @@
+package com.danielezihe.controllers;
+
+import com.danielezihe.entities.ToDoEntity;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs ranked boolean queries through {@link ToDoController#rankedSearch(String, int)} and
+ * checks both which Todos match and how they are ordered.
+ */
+class TodoQueryEngineTest {
+    private ToDoController controller;
+
+    @BeforeEach
+    void createTodos() {
+        controller = new ToDoController();
+        controller.createNewTodos(List.of(
+                Map.entry("gym morning", "legs day"),           // 1
+                Map.entry("run", "morning run in the park"),    // 2
+                Map.entry("gym evening", "cancelled"),          // 3
+                Map.entry("shop", "milk and bread"),            // 4
+                Map.entry("read", "book before gym"),           // 5
+                Map.entry("Weekend RUN", "with the dog")        // 6
+        ));
+    }
+
+    @Test
+    void adjacentWordsAreJoinedWithAnd() {
+        assertEquals(Set.of(1), matches("gym morning"));
+        assertEquals(Set.of(1), matches("gym AND morning"));
+    }
+
+    @Test
+    void operatorsCombineWithAndBindingTighterThanOr() {
+        assertEquals(Set.of(1, 3, 5), matches("gym"));
+        assertEquals(Set.of(1, 5), matches("gym NOT cancelled"));
+        assertEquals(Set.of(1, 2, 4, 6), matches("morning OR shop OR weekend"));
+        assertEquals(Set.of(1, 4), matches("gym morning OR milk"));
+        assertEquals(Set.of(1, 2), matches("(gym OR run) morning"));
+        assertEquals(Set.of(2, 4, 6), matches("NOT gym NOT read"));
+        assertEquals(Set.of(1, 3, 5), matches("NOT NOT gym"));
+        assertEquals(Set.of(2, 3, 4, 5, 6), matches("NOT (gym morning)"));
+    }
+
+    @Test
+    void wordsIgnoreCaseAndPunctuation() {
+        assertEquals(Set.of(2, 6), matches("RUN"));
+        assertEquals(Set.of(1), matches("gym-morning"));
+        assertEquals(Set.of(1), matches("gym & morning"));
+    }
+
+    @Test
+    void unknownWordsMatchNothingUnlessNegated() {
+        assertEquals(Set.of(), matches("swim"));
+        assertEquals(Set.of(1, 3, 5), matches("swim OR gym"));
+        assertEquals(6, matches("NOT swim").size());
+    }
+
+    @Test
+    void titleMatchesRankAboveDescriptionMatches() {
+        assertEquals(5, ids(controller.rankedSearch("gym", 10)).get(2));
+        assertEquals(List.of(2, 6), ids(controller.rankedSearch("run", 10)));
+    }
+
+    @Test
+    void rarerWordsWeighMore() {
+        // Both words are only in Descriptions: "bread" in one Todo, "the" in two
+        assertEquals(List.of(4, 2, 6), ids(controller.rankedSearch("bread OR the", 10)));
+    }
+
+    @Test
+    void limitKeepsBestMatches() {
+        assertEquals(List.of(1, 3, 5), ids(controller.rankedSearch("gym", 10)));
+        assertEquals(List.of(1, 3), ids(controller.rankedSearch("gym", 2)));
+        assertThrows(IllegalArgumentException.class, () -> controller.rankedSearch("gym", 0));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"", "   ", "&&", "(gym", "gym)", "gym AND", "OR gym", "NOT", "()", "gym OR OR run"})
+    void malformedQueriesAreRefused(String query) {
+        assertThrows(IllegalArgumentException.class, () -> controller.rankedSearch(query, 10));
+    }
+
+    private Set<Integer> matches(String query) {
+        return controller.rankedSearch(query, 100).stream().map(ToDoEntity::getId).collect(Collectors.toSet());
+    }
+
+    private static List<Integer> ids(List<ToDoEntity> todos) {
+        return todos.stream().map(ToDoEntity::getId).toList();
+    }
+}
@@ -0,0 +1,120 @@
+package com.danielezihe.controllers;
+
+import com.danielezihe.entities.ToDoEntity;
+import com.danielezihe.entities.util.ToDoStatus;
+import com.danielezihe.entities.util.TodoEntityProperties;
+import com.danielezihe.entities.util.TodoStoreTypes;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Writes Todos to spill files and reads them back, as a controller evicted from memory would be.
+ */
+class TodoSpillFilesTest {
+    private static final String LONG_TEXT = "A description long enough to be kept encoded. ".repeat(5);
+
+    private Path directory;
+    private TodoSpillFiles spillFiles;
+
+    @BeforeEach
+    void useFreshDirectory() throws IOException {
+        directory = Files.createTempDirectory("todoapp-spill");
+        spillFiles = new TodoSpillFiles(directory);
+    }
+
+    @ParameterizedTest
+    @EnumSource(TodoStoreTypes.class)
+    void spilledTodosReadBackWhole(TodoStoreTypes storeType) throws IOException {
+        ToDoController written = new ToDoController(storeType);
+        written.createNewTodos(List.of(Map.entry("gym", LONG_TEXT), Map.entry("caf\u00e9 \u2615", "na\u00efve"), Map.entry("shop", "milk")));
+        written.createNewTodo("no description", null);
+        written.updateTodo(2, ToDoStatus.COMPLETED);
+        written.deleteTodo(3);
+
+        spillFiles.write(7, written);
+        ToDoController read = spillFiles.read(7, storeType);
+
+        assertEquals(written.getLastTodoId(), read.getLastTodoId());
+        assertEquals(describe(written.getAllTodos().map(Map.Entry::getValue).toList()), describe(read.getAllTodos().map(Map.Entry::getValue).toList()));
+        assertEquals(describe(read.getAllTodos().map(Map.Entry::getValue).toList()), describe(spillFiles.decodeTodos(7)));
+        assertEquals(1, read.countTodos(ToDoStatus.COMPLETED));
+        assertEquals(List.of(1), read.findTodoStream("encoded", TodoEntityProperties.DESCRIPTION, false).map(ToDoEntity::getId).toList());
+
+        // New Todos of a read back controller carry on from the last id handed out
+        assertEquals(5, read.createNewTodo("next", "todo").getId());
+    }
+
+    @Test
+    void encodedTodosMatchWhatSnapshotsWrite() throws IOException {
+        ToDoController written = new ToDoController();
+        written.createNewTodos(List.of(Map.entry("gym", "legs"), Map.entry("shop", LONG_TEXT)));
+        spillFiles.write(1, written);
+
+        ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+        TodoSpillFiles.writeTodos(new DataOutputStream(encoded), written);
+        assertArrayEquals(encoded.toByteArray(), spillFiles.readEncoded(1));
+    }
+
+    @Test
+    void userWithoutFileHasNothingToRead() throws IOException {
+        assertNull(spillFiles.read(1, TodoStoreTypes.OBJECTS));
+        assertNull(spillFiles.decodeTodos(1));
+        assertNull(spillFiles.readEncoded(1));
+    }
+
+    @Test
+    void writeReplacesEarlierFile() throws IOException {
+        ToDoController written = new ToDoController();
+        written.createNewTodo("gym", "legs");
+        spillFiles.write(1, written);
+        written.createNewTodo("shop", "milk");
+        spillFiles.write(1, written);
+
+        assertEquals(2, spillFiles.decodeTodos(1).size());
+        try (var files = Files.list(directory)) {
+            assertEquals(1, files.count());
+        }
+    }
+
+    @Test
+    void unknownFormatVersionIsRefused() throws IOException {
+        spillFiles.write(1, new ToDoController());
+        Path file;
+        try (var files = Files.list(directory)) {
+            file = files.findFirst().orElseThrow();
+        }
+        byte[] bytes = Files.readAllBytes(file);
+        bytes[3]++;
+        Files.write(file, bytes);
+
+        assertThrows(IOException.class, () -> spillFiles.read(1, TodoStoreTypes.OBJECTS));
+        assertThrows(IOException.class, () -> spillFiles.readEncoded(1));
+    }
+
+    @Test
+    void filesOfEarlierRunAreDeleted() throws IOException {
+        ToDoController written = new ToDoController();
+        written.createNewTodo("gym", "legs");
+        spillFiles.write(1, written);
+
+        assertNull(new TodoSpillFiles(directory).decodeTodos(1));
+    }
+
+    private static List<String> describe(List<ToDoEntity> todos) {
+        return todos.stream().sorted()
+                .map(todo -> todo.getId() + " " + todo.getTitle() + " " + todo.getDescription() + " " + todo.getStatus() + " " + todo.getCreatedAt())
+                .toList();
+    }
+}
@@ -0,0 +1,77 @@
+package com.danielezihe.controllers;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks the candidates the text index hands out as texts are added, replaced and removed.
+ */
+class TodoTextIndexTest {
+    private TodoTextIndex index;
+
+    @BeforeEach
+    void indexTexts() {
+        index = new TodoTextIndex();
+        index.add(1, "Buy Milk");
+        index.add(2, "milk the cow");
+        index.add(3, "Walk the dog");
+        index.add(4, null);
+    }
+
+    @Test
+    void substringCandidatesHoldEveryQueryGram() {
+        assertEquals(List.of(1, 2), ids(index.findContainingCandidates("MILK", 0)));
+        assertEquals(List.of(2, 3), ids(index.findContainingCandidates("the", 0)));
+        assertEquals(List.of(), ids(index.findContainingCandidates("cat", 0)));
+        assertEquals(List.of(2), ids(index.findContainingCandidates("milk", 1)));
+    }
+
+    @Test
+    void queriesShorterThanGramCannotBeAnswered() {
+        assertNull(index.findContainingCandidates("mi", 0));
+        assertNull(index.findEqualCandidates("  ", 0));
+    }
+
+    @Test
+    void equalCandidatesHoldEveryQueryWord() {
+        assertEquals(List.of(1), ids(index.findEqualCandidates("buy milk", 0)));
+        assertEquals(List.of(2, 3), ids(index.findEqualCandidates("THE", 0)));
+        assertEquals(List.of(1, 2), ids(index.findEqualCandidates("milk!", 0)));
+    }
+
+    @Test
+    void wordsAreCountedPerTodo() {
+        assertEquals(2, index.countTokenIds("milk"));
+        assertEquals(0, index.countTokenIds("Milk"));
+        assertEquals(List.of(1, 2), List.copyOf(index.findTokenIds("milk")));
+        assertTrue(index.findTokenIds("cat").isEmpty());
+    }
+
+    @Test
+    void replaceMovesTodoToNewText() {
+        index.replace(1, "Buy Milk", "buy bread");
+
+        assertEquals(List.of(2), ids(index.findContainingCandidates("milk", 0)));
+        assertEquals(List.of(1), ids(index.findContainingCandidates("bread", 0)));
+        assertEquals(List.of(1), ids(index.findEqualCandidates("buy", 0)));
+        assertEquals(1, index.countTokenIds("milk"));
+    }
+
+    @Test
+    void removeDropsTodoAndEmptyPostingLists() {
+        index.remove(3, "Walk the dog");
+
+        assertEquals(List.of(), ids(index.findContainingCandidates("dog", 0)));
+        assertEquals(List.of(2), ids(index.findEqualCandidates("the", 0)));
+        assertEquals(0, index.countTokenIds("walk"));
+    }
+
+    private static List<Integer> ids(Stream<Integer> candidates) {
+        return candidates.toList();
+    }
+}
@@ -0,0 +1,90 @@
+package com.danielezihe.controllers;
+
+import com.danielezihe.entities.UserEntity;
+import com.danielezihe.entities.util.UserEntityChangeableProperties;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.util.*;
+
+import static com.danielezihe.controllers.ConcurrentTestSupport.THREADS;
+import static com.danielezihe.controllers.ConcurrentTestSupport.runConcurrently;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Races sign-ups and email changes on shared emails and checks that every email ends up with
+ * exactly one owner.
+ */
+class UserControllerConcurrencyTest {
+    private static final int SHARED_EMAILS = 4;
+
+    private static UserController userController;
+
+    @BeforeAll
+    static void startUserController() throws Exception {
+        System.setProperty(UserController.PASSWORD_HASH_BUDGET_PROPERTY, "1");
+        System.setProperty(UserController.DATA_DIRECTORY_PROPERTY, Files.createTempDirectory("todoapp-data").toString());
+        System.setProperty(UserController.TODO_SPILL_DIRECTORY_PROPERTY, Files.createTempDirectory("todoapp-spill").toString());
+        userController = UserController.getInstance();
+    }
+
+    @Test
+    void concurrentSignUpsWithSharedEmailsHaveOneWinnerEach() throws Exception {
+        String prefix = UUID.randomUUID() + "-signup-";
+
+        List<List<String>> savedEmails = runConcurrently(thread -> {
+            List<String> saved = new ArrayList<>();
+            for (int i = 0; i < SHARED_EMAILS; i++) {
+                try {
+                    saved.add(userController.save("user " + thread, prefix + i + "@x", "password").getEmail());
+                } catch (UnsupportedOperationException lost) {
+                    // The email was taken first, or its attempts were used up by the other threads
+                }
+            }
+            return saved;
+        });
+
+        for (int i = 0; i < SHARED_EMAILS; i++) {
+            String email = prefix + i + "@x";
+            assertEquals(1, savedEmails.stream().flatMap(List::stream).filter(email::equals).count(), "Winners for " + email);
+            assertEquals(1, usersWithEmail(email), "Users stored under " + email);
+        }
+    }
+
+    @Test
+    void concurrentSignUpsAndEmailChangesToASharedEmailHaveOneWinner() throws Exception {
+        String prefix = UUID.randomUUID() + "-change-";
+        String sharedEmail = prefix + "shared@x";
+        for (int thread = 0; thread < THREADS; thread += 2)
+            userController.save("user " + thread, prefix + thread + "@x", "password");
+
+        List<Boolean> won = runConcurrently(thread -> {
+            try {
+                if (thread % 2 == 0)
+                    userController.updateUser(prefix + thread + "@x", sharedEmail, UserEntityChangeableProperties.EMAIL);
+                else
+                    userController.save("user " + thread, sharedEmail, "password");
+                return true;
+            } catch (UnsupportedOperationException lost) {
+                return false;
+            }
+        });
+
+        assertEquals(1, won.stream().filter(Boolean::booleanValue).count());
+        assertEquals(1, usersWithEmail(sharedEmail));
+
+        for (int thread = 0; thread < THREADS; thread += 2) {
+            if (won.get(thread))
+                assertEquals(0, usersWithEmail(prefix + thread + "@x"), "Old email of the winner is still taken");
+            else
+                assertEquals(1, usersWithEmail(prefix + thread + "@x"), "Loser " + thread + " lost its email");
+        }
+        assertEquals(userController.getAllUsersStream().count(),
+                userController.getAllUsersStream().map(Map.Entry::getKey).distinct().count(), "Two users share an email");
+    }
+
+    private static long usersWithEmail(String email) {
+        return userController.getAllUsersStream().filter(entry -> entry.getKey().equals(email)).count();
+    }
+}
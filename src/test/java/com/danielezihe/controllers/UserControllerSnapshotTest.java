@@ -0,0 +1,161 @@
+package com.danielezihe.controllers;
+
+import com.danielezihe.entities.ToDoEntity;
+import com.danielezihe.entities.UserEntity;
+import com.danielezihe.entities.util.ToDoStatus;
+import com.danielezihe.entities.util.TodoEntityProperties;
+import com.danielezihe.entities.util.UserEntityChangeableProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Takes snapshots while Todos change and Todo controllers are evicted, reopens the data
+ * directory and checks that nothing acknowledged was lost.
+ */
+class UserControllerSnapshotTest {
+    private static final int BATCH_SIZE = 20_000;
+
+    private Path dataDirectory;
+
+    @BeforeEach
+    void useFreshDirectories() throws Exception {
+        dataDirectory = Files.createTempDirectory("todoapp-data");
+        System.setProperty(UserController.PASSWORD_HASH_BUDGET_PROPERTY, "1");
+        System.setProperty(UserController.DATA_DIRECTORY_PROPERTY, dataDirectory.toString());
+        System.setProperty(UserController.TODO_SPILL_DIRECTORY_PROPERTY, Files.createTempDirectory("todoapp-spill").toString());
+    }
+
+    @AfterEach
+    void restoreResidentLimit() {
+        System.clearProperty(UserController.MAX_RESIDENT_TODO_STORES_PROPERTY);
+    }
+
+    @Test
+    void snapshotsDuringBatchCreateKeepTheWholeBatch() {
+        UserController userController = new UserController();
+        UserEntity user = userController.save("user", "batch@x", "password");
+        List<Map.Entry<String, String>> batch = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < BATCH_SIZE; i++)
+            batch.add(Map.entry("todo " + i, "description " + i));
+
+        CompletableFuture<List<ToDoEntity>> created = CompletableFuture.supplyAsync(() -> user.getMyTodoController().createNewTodos(batch));
+        int snapshots = 0;
+        while (!created.isDone()) {
+            userController.takeSnapshot();
+            snapshots++;
+        }
+        assertEquals(BATCH_SIZE, created.join().size());
+        userController.takeSnapshot();
+        userController.closeWriteAheadLog();
+        assertTrue(snapshots > 0);
+
+        assertEquals(BATCH_SIZE, todosOf(reopen(), "batch@x").getAllTodos().count());
+    }
+
+    @Test
+    void changesAfterSnapshotAreReplayedFromTheLog() {
+        UserController userController = new UserController();
+        ToDoController todos = userController.save("user", "replay@x", "password").getMyTodoController();
+        todos.createNewTodos(List.of(Map.entry("gym", "morning"), Map.entry("shop", "milk"), Map.entry("read", "book")));
+        userController.takeSnapshot();
+
+        todos.updateTodo(1, "gym twice", TodoEntityProperties.TITLE);
+        todos.updateTodo(2, ToDoStatus.COMPLETED);
+        todos.deleteTodo(3);
+        todos.createNewTodo("call", "mum");
+        userController.updateUser("replay@x", "renamed", UserEntityChangeableProperties.NAME);
+        userController.closeWriteAheadLog();
+
+        UserController reopened = reopen();
+        ToDoController restored = todosOf(reopened, "replay@x");
+        assertEquals("renamed", reopened.getAllUsersStream().filter(entry -> entry.getKey().equals("replay@x")).findFirst().orElseThrow().getValue().getName());
+        assertEquals("gym twice", restored.getTodo(1).getTitle());
+        assertEquals(ToDoStatus.COMPLETED, restored.getTodo(2).getStatus());
+        assertNull(restored.getTodo(3));
+        assertEquals("call", restored.getTodo(4).getTitle());
+        assertEquals(3, restored.getAllTodos().count());
+    }
+
+    @Test
+    void snapshotWithNothingNewLoggedIsSkipped() throws Exception {
+        UserController userController = new UserController();
+        userController.save("user", "skip@x", "password").getMyTodoController().createNewTodo("gym", "morning");
+        userController.takeSnapshot();
+        List<Path> snapshots = snapshotFiles();
+        userController.takeSnapshot();
+        userController.closeWriteAheadLog();
+
+        assertEquals(1, snapshots.size());
+        assertEquals(snapshots, snapshotFiles());
+        assertEquals(1, todosOf(reopen(), "skip@x").getAllTodos().count());
+    }
+
+    @Test
+    void changesThroughEvictedControllerAreKept() {
+        System.setProperty(UserController.MAX_RESIDENT_TODO_STORES_PROPERTY, "1");
+        UserController userController = new UserController();
+        UserEntity user = userController.save("user", "held@x", "password");
+        ToDoController held = user.getMyTodoController();
+        held.createNewTodo("gym", "morning");
+
+        // Loading the other user's Todos evicts the held controller
+        userController.save("other", "other@x", "password").getMyTodoController().createNewTodo("shop", "milk");
+        held.createNewTodo("run", "evening");
+        held.updateTodo(1, ToDoStatus.COMPLETED);
+
+        assertSame(held, user.getMyTodoController());
+        userController.takeSnapshot();
+        userController.closeWriteAheadLog();
+
+        ToDoController restored = todosOf(reopen(), "held@x");
+        assertEquals(2, restored.getAllTodos().count());
+        assertEquals(ToDoStatus.COMPLETED, restored.getTodo(1).getStatus());
+        assertEquals("run", restored.getTodo(2).getTitle());
+    }
+
+    @Test
+    void searchAcrossUsersReadsTodosNotLoadedSinceSnapshot() {
+        UserController userController = new UserController();
+        userController.save("first", "first@x", "password").getMyTodoController()
+                .createNewTodos(List.of(Map.entry("gym", "morning"), Map.entry("shop", "milk")));
+        userController.save("second", "second@x", "password").getMyTodoController()
+                .createNewTodos(List.of(Map.entry("read", "book"), Map.entry("gym", "evening")));
+        userController.takeSnapshot();
+        userController.closeWriteAheadLog();
+
+        UserController reopened = reopen();
+        List<Map.Entry<UserEntity, ToDoEntity>> found = reopened.findTodoAcrossUsers("gym", TodoEntityProperties.TITLE, true, 10);
+        assertEquals(List.of("first@x 1 morning", "second@x 2 evening"), found.stream()
+                .map(entry -> entry.getKey().getEmail() + " " + entry.getValue().getId() + " " + entry.getValue().getDescription())
+                .sorted().toList());
+        assertEquals(1, reopened.findTodoAcrossUsers("milk", TodoEntityProperties.DESCRIPTION, false, 10).size());
+        assertEquals(1, reopened.findTodoAcrossUsers("gym", TodoEntityProperties.TITLE, true, 1).size());
+    }
+
+    private UserController reopen() {
+        UserController reopened = new UserController();
+        reopened.closeWriteAheadLog();
+        return reopened;
+    }
+
+    private static ToDoController todosOf(UserController userController, String email) {
+        return userController.getAllUsersStream()
+                .filter(entry -> entry.getKey().equals(email))
+                .findFirst().orElseThrow()
+                .getValue().getMyTodoController();
+    }
+
+    private List<Path> snapshotFiles() throws Exception {
+        try (var files = Files.list(dataDirectory)) {
+            return files.filter(file -> !Files.isDirectory(file)).sorted().toList();
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package com.danielezihe.controllers;
+
+import com.danielezihe.entities.ToDoEntity;
+import com.danielezihe.entities.UserEntity;
+import com.danielezihe.entities.util.LogDurabilityTypes;
+import com.danielezihe.entities.util.ToDoStatus;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Appends records, damages the segments the way a crash or a bad disk would, and checks
+ * what is replayed when the log is opened again.
+ */
+class WriteAheadLogTest {
+    private Path directory;
+
+    @BeforeEach
+    void useFreshDirectory() throws IOException {
+        directory = Files.createTempDirectory("todoapp-wal");
+    }
+
+    @ParameterizedTest
+    @EnumSource(LogDurabilityTypes.class)
+    void appendedRecordsAreReplayedInOrder(LogDurabilityTypes durability) throws IOException {
+        try (WriteAheadLog log = open(0, durability, new ArrayList<>())) {
+            log.append(List.of(WriteAheadLog.userRecord(new UserEntity(1, "name", "email@x", "hash", (ToDoController) null))));
+            log.append(List.of(todo(1, "gym"), todo(2, "shop")));
+            log.append(List.of(WriteAheadLog.todoDeletedRecord(1, 2)));
+        }
+
+        assertEquals(List.of("user 1 name email@x hash", "todo 1 1 gym", "todo 1 2 shop", "deleted 1 2"), replay(0));
+    }
+
+    @Test
+    void recordsCoveredBySnapshotAreSkipped() throws IOException {
+        appendTodos(4);
+
+        assertEquals(List.of("todo 1 3 todo 3", "todo 1 4 todo 4"), replay(2));
+    }
+
+    @Test
+    void tornTailIsCutOffNewestSegment() throws IOException {
+        appendTodos(2);
+        Path segment = onlySegment();
+        long goodSize = Files.size(segment);
+        Files.write(segment, new byte[]{0, 0, 0, 40, 1, 2, 3}, StandardOpenOption.APPEND);
+
+        List<String> replayed = new ArrayList<>();
+        try (WriteAheadLog log = open(0, LogDurabilityTypes.PER_BATCH, replayed)) {
+            assertEquals(goodSize, Files.size(segment));
+            WriteAheadLog.awaitDurable(log.append(List.of(todo(3, "after"))));
+        }
+
+        assertEquals(List.of("todo 1 1 todo 1", "todo 1 2 todo 2"), replayed);
+        assertEquals(List.of("todo 1 1 todo 1", "todo 1 2 todo 2", "todo 1 3 after"), replay(0));
+    }
+
+    @Test
+    void recordFailingItsChecksumEndsReplayOfNewestSegment() throws IOException {
+        appendTodos(3);
+        Path segment = onlySegment();
+        flipLastByte(segment, recordEnd(segment, 2));
+
+        assertEquals(List.of("todo 1 1 todo 1"), replay(0));
+        assertEquals(recordEnd(segment, 1), Files.size(segment));
+    }
+
+    @Test
+    void corruptOlderSegmentFailsOpen() throws IOException {
+        try (WriteAheadLog log = open(0, LogDurabilityTypes.PER_BATCH, new ArrayList<>())) {
+            log.append(List.of(todo(1, "first"), todo(2, "second")));
+            WriteAheadLog.awaitDurable(log.rollover());
+            WriteAheadLog.awaitDurable(log.append(List.of(todo(3, "third"))));
+        }
+        Path older = segments().get(0);
+        flipLastByte(older, Files.size(older));
+
+        assertThrows(IOException.class, () -> open(0, LogDurabilityTypes.PER_BATCH, new ArrayList<>()).close());
+    }
+
+    @Test
+    void deleteSegmentsBeforeOnlyDeletesSegmentsCoveredBySequence() throws IOException {
+        long covered;
+        try (WriteAheadLog log = open(0, LogDurabilityTypes.PER_BATCH, new ArrayList<>())) {
+            log.append(List.of(todo(1, "first"), todo(2, "second")));
+            covered = WriteAheadLog.awaitDurable(log.rollover());
+            log.append(List.of(todo(3, "third")));
+            WriteAheadLog.awaitDurable(log.rollover());
+            WriteAheadLog.awaitDurable(log.append(List.of(todo(4, "fourth"))));
+
+            assertEquals(2, covered);
+            assertEquals(3, segments().size());
+            log.deleteSegmentsBefore(covered + 1);
+            assertEquals(2, segments().size());
+        }
+
+        assertEquals(List.of("todo 1 3 third", "todo 1 4 fourth"), replay(covered));
+    }
+
+    @Test
+    void failedRolloverKeepsAppendingToCurrentSegment() throws IOException {
+        Path blocker;
+        try (WriteAheadLog log = open(0, LogDurabilityTypes.PER_BATCH, new ArrayList<>())) {
+            WriteAheadLog.awaitDurable(log.append(List.of(todo(1, "before"))));
+            // A directory where the next segment file should go makes starting it fail
+            blocker = Files.createDirectory(directory.resolve(String.format("wal-%020d.log", log.lastSequence() + 1)));
+
+            assertThrows(UncheckedIOException.class, () -> WriteAheadLog.awaitDurable(log.rollover()));
+            WriteAheadLog.awaitDurable(log.append(List.of(todo(2, "after"))));
+        }
+        Files.delete(blocker);
+
+        assertEquals(List.of("todo 1 1 before", "todo 1 2 after"), replay(0));
+    }
+
+    @Test
+    void closedLogRefusesAppends() throws IOException {
+        WriteAheadLog log = open(0, LogDurabilityTypes.PER_BATCH, new ArrayList<>());
+        log.close();
+
+        assertThrows(IllegalStateException.class, () -> log.append(List.of(todo(1, "late"))));
+        assertThrows(IllegalStateException.class, log::rollover);
+    }
+
+    private void appendTodos(int count) throws IOException {
+        try (WriteAheadLog log = open(0, LogDurabilityTypes.PER_BATCH, new ArrayList<>())) {
+            for (int id = 1; id <= count; id++)
+                log.append(List.of(todo(id, "todo " + id)));
+        }
+    }
+
+    private List<String> replay(long afterSequence) throws IOException {
+        List<String> replayed = new ArrayList<>();
+        open(afterSequence, LogDurabilityTypes.PER_BATCH, replayed).close();
+        return replayed;
+    }
+
+    private WriteAheadLog open(long afterSequence, LogDurabilityTypes durability, List<String> replayed) throws IOException {
+        return WriteAheadLog.open(directory, afterSequence, durability, 1, new WriteAheadLog.ReplayHandler() {
+            @Override
+            public void userSaved(int userId, String name, String email, String password) {
+                replayed.add("user " + userId + " " + name + " " + email + " " + password);
+            }
+
+            @Override
+            public void todoSaved(int userId, ToDoEntity todo) {
+                replayed.add("todo " + userId + " " + todo.getId() + " " + todo.getTitle());
+            }
+
+            @Override
+            public void todoDeleted(int userId, int todoId) {
+                replayed.add("deleted " + userId + " " + todoId);
+            }
+        });
+    }
+
+    private static byte[] todo(int id, String title) {
+        return WriteAheadLog.todoRecord(1, new ToDoEntity(id, title, "description", ToDoStatus.ACTIVE, 0L));
+    }
+
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(Files::isRegularFile).sorted().toList();
+        }
+    }
+
+    private Path onlySegment() throws IOException {
+        List<Path> segments = segments();
+        assertEquals(1, segments.size());
+        return segments.get(0);
+    }
+
+    /**
+     * @return the position just after the @param(records) first records of a segment
+     */
+    private static long recordEnd(Path segment, int records) throws IOException {
+        ByteBuffer bytes = ByteBuffer.wrap(Files.readAllBytes(segment));
+        for (int i = 0; i < records; i++)
+            bytes.position(bytes.position() + 2 * Integer.BYTES + bytes.getInt(bytes.position()));
+        return bytes.position();
+    }
+
+    /**
+     * Flips the byte just before a position, which lies inside the payload of a record ending there
+     */
+    private static void flipLastByte(Path segment, long end) throws IOException {
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer one = ByteBuffer.allocate(1);
+            channel.read(one, end - 1);
+            one.put(0, (byte) ~one.get(0)).rewind();
+            channel.write(one, end - 1);
+        }
+    }
+}